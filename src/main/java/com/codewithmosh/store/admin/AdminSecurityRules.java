@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 public class AdminSecurityRules implements SecurityRules {
     @Override
     public void configure(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry registry) {
-        registry.requestMatchers("/admin/**").hasRole(Role.ADMIN.name());
+        registry.requestMatchers("/admin/**").hasRole(Role.ADMIN.name())
+                .requestMatchers("/actuator/**").hasRole(Role.ADMIN.name());
     }
 }
@@ -1,9 +1,8 @@
 package com.codewithmosh.store.auth;
 
 import com.codewithmosh.store.users.UserDto;
-import com.codewithmosh.store.users.UserMapper;
-import com.codewithmosh.store.users.UserRepository;
 import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import jakarta.validation.Valid;
@@ -11,7 +10,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -19,13 +17,17 @@ import org.springframework.web.bind.annotation.*;
 @AllArgsConstructor
 public class AuthController {
 
-    private final UserRepository userRepository;
-    private final UserMapper userMapper;
     private final JwtConfig jwtConfig;
     private final AuthService authService;
+    private final LoginThrottle loginThrottle;
 
     @PostMapping("/login")
-    public JwtResponse login(@Valid @RequestBody LoginRequest request, HttpServletResponse response) {
+    public JwtResponse login(
+            @Valid @RequestBody LoginRequest request,
+            HttpServletRequest httpRequest,
+            HttpServletResponse response) {
+        //the client's address behind a trusted proxy, see server.forward-headers-strategy
+        loginThrottle.acquire(httpRequest.getRemoteAddr(), request.getEmail());
         var loginResult = authService.login(request);
         var cookie = new Cookie("refreshToken", loginResult.getRefreshToken().toString());
         cookie.setHttpOnly(true);
@@ -39,18 +41,9 @@ public class AuthController {
 
     @GetMapping("/me")
     public ResponseEntity<UserDto> me(){
-        //get the principal
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        var userId = (Long) authentication.getPrincipal();
-
-        //find user by email
-        var user = userRepository.findById(userId).orElse(null);
-        if(user == null) {
-            return ResponseEntity.notFound().build();
-        }
-
-        //map the user to dto
-        var userDto = userMapper.toDto(user);
+        //the access token already carries everything the dto needs
+        var principal = authService.getCurrentPrincipal();
+        var userDto = new UserDto(principal.getId(), principal.getName(), principal.getEmail());
         return ResponseEntity.ok(userDto);
     }
 
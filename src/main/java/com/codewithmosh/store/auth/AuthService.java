@@ -1,5 +1,6 @@
 package com.codewithmosh.store.auth;
 
+import com.codewithmosh.store.carts.CartService;
 import com.codewithmosh.store.users.User;
 import com.codewithmosh.store.users.UserRepository;
 import jakarta.servlet.http.Cookie;
@@ -20,14 +21,35 @@ public class AuthService {
     private final UserRepository userRepository;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final CartService cartService;
 
-    public User getCurrentUser(){
+    public UserPrincipal getCurrentPrincipal(){
         //get the principal
         var authentication = SecurityContextHolder.getContext().getAuthentication();
-        var userId = (Long) authentication.getPrincipal();
+        return (UserPrincipal) authentication.getPrincipal();
+    }
 
-        //find user by email
-        return userRepository.findById(userId).orElse(null);
+    public Long getCurrentUserId(){
+        return getCurrentPrincipal().getId();
+    }
+
+    //null on endpoints that also serve anonymous requests
+    public Long findCurrentUserId(){
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return null;
+    }
+
+    //a proxy for associations (e.g. Order.customer), the users table is not queried
+    public User getCurrentUserReference(){
+        return userRepository.getReferenceById(getCurrentUserId());
+    }
+
+    //loads the full entity, use only when the user's own state is needed
+    public User getCurrentUser(){
+        return userRepository.findById(getCurrentUserId()).orElse(null);
     }
 
     public LoginResponse login (LoginRequest request){
@@ -39,6 +61,10 @@ public class AuthService {
         var accessToken = jwtService.generateAccessToken(user);
         var refreshToken = jwtService.generateRefreshToken(user); //only put in http cookie not accessible by JavaScript
 
+        if (request.getCartId() != null) {
+            cartService.mergeIntoCustomerCart(user.getId(), request.getCartId());
+        }
+
        return new LoginResponse(accessToken, refreshToken);
     }
 
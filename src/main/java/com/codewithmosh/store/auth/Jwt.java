@@ -22,10 +22,22 @@ public class Jwt {
         return claims.getExpiration().before(new Date());
     }
 
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
     public Long getUserId() {
         return  Long.valueOf(claims.getSubject());
     }
 
+    public String getEmail() {
+        return claims.get("email", String.class);
+    }
+
+    public String getName() {
+        return claims.get("name", String.class);
+    }
+
     public Role getRole() {
         return Role.valueOf(claims.get("role", String.class));
     }
@@ -19,7 +19,7 @@ import java.util.List;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final SecurityConfig.JwtService jwtService;
+    private final JwtService jwtService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -36,8 +36,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        var principal = new UserPrincipal(jwt.getUserId(), jwt.getEmail(), jwt.getName(), jwt.getRole());
         var authentication = new UsernamePasswordAuthenticationToken(
-                jwt.getUserId(),
+                principal,
                 null,
                 List.of(new SimpleGrantedAuthority("ROLE_"+ jwt.getRole()))
         );
@@ -1,7 +1,9 @@
 package com.codewithmosh.store.auth;
 
 import io.jsonwebtoken.security.Keys;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,8 +16,21 @@ public class JwtConfig {
     private String secret;
     private int accessTokenExpiration;
     private int refreshTokenExpiration;
+    private long verifiedTokenCacheSize = 10_000;
 
+    @Setter(AccessLevel.NONE)
+    private volatile SecretKey secretKey;
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+        this.secretKey = null;
+    }
+
+    //derived once instead of on every sign/verify
     public SecretKey getSecretKey() {
-       return Keys.hmacShaKeyFor(secret.getBytes());
+        if (secretKey == null) {
+            secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        }
+        return secretKey;
     }
 }
@@ -26,7 +26,7 @@ public class JwtResponse {
         public User getCurrentUser(){
             //get the principal
             var authentication = SecurityContextHolder.getContext().getAuthentication();
-            var userId = (Long) authentication.getPrincipal();
+            var userId = ((UserPrincipal) authentication.getPrincipal()).getId();
 
             //find user by email
             return userRepository.findById(userId).orElse(null);
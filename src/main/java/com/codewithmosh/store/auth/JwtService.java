@@ -2,18 +2,55 @@ package com.codewithmosh.store.auth;
 
 
 import com.codewithmosh.store.users.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
-@AllArgsConstructor
 @Service
 public class JwtService {
     private final JwtConfig jwtConfig;
+    private final JwtParser jwtParser;
+    //token digest -> verified token, an entry expires together with its token
+    private final Cache<String, Jwt> verifiedTokens;
+
+    public JwtService(JwtConfig jwtConfig) {
+        this.jwtConfig = jwtConfig;
+        this.jwtParser = Jwts.parser()
+                .verifyWith(jwtConfig.getSecretKey())
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getVerifiedTokenCacheSize())
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                        var millisLeft = jwt.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisLeft));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
     public Jwt generateAccessToken(User user) {
         System.out.println(jwtConfig.getAccessTokenExpiration());
@@ -39,20 +76,35 @@ public class JwtService {
     }
 
     public Jwt parseToken(String token) {
+        var digest = digest(token);
+        var cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+
         try{
             var claims = getClaims(token);
-            return new Jwt(claims, jwtConfig.getSecretKey());
+            var jwt = new Jwt(claims, jwtConfig.getSecretKey());
+            verifiedTokens.put(digest, jwt);
+            return jwt;
         }catch (JwtException e) {
             return null;
         }
     }
 
     private Claims getClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(jwtConfig.getSecretKey())
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
+    private String digest(String token) {
+        try {
+            var hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
@@ -4,6 +4,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
+import java.util.UUID;
+
 @Data
 public class LoginRequest {
     @NotBlank(message = "Email is required")
@@ -12,4 +14,7 @@ public class LoginRequest {
 
     @NotBlank(message = "Password is required")
     private String password;
+
+    //anonymous cart to merge into the user's cart
+    private UUID cartId;
 }
@@ -0,0 +1,54 @@
+package com.codewithmosh.store.auth;
+
+import com.codewithmosh.store.common.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//token buckets per client ip and per email, checked before any password hashing happens
+@Component
+public class LoginThrottle {
+
+    private final LoginThrottleConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final Cache<String, TokenBucket> emailBuckets;
+
+    public LoginThrottle(LoginThrottleConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.ipBuckets = newBucketCache();
+        this.emailBuckets = newBucketCache();
+    }
+
+    public void acquire(String clientIp, String email) {
+        var perIp = config.getPerIp();
+        var ipBucket = ipBuckets.get(clientIp, key -> new TokenBucket(perIp.getCapacity(), perIp.getRefillPerMinute()));
+        if (!ipBucket.tryConsume()) {
+            reject("ip");
+        }
+
+        var perEmail = config.getPerEmail();
+        var emailBucket = emailBuckets.get(email.toLowerCase(),
+                key -> new TokenBucket(perEmail.getCapacity(), perEmail.getRefillPerMinute()));
+        if (!emailBucket.tryConsume()) {
+            reject("email");
+        }
+    }
+
+    private void reject(String limit) {
+        meterRegistry.counter("auth.login.throttled", "limit", limit).increment();
+        throw new TooManyRequestsException("Too many login attempts, try again later.");
+    }
+
+    private static Cache<String, TokenBucket> newBucketCache() {
+        //an idle bucket is full again anyway, so it can be dropped
+        return Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+}
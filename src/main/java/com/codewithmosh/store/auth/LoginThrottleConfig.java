@@ -0,0 +1,27 @@
+package com.codewithmosh.store.auth;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "auth.login-throttle")
+public class LoginThrottleConfig {
+    private Limit perIp = new Limit(20, 10);
+    private Limit perEmail = new Limit(5, 5);
+
+    @Data
+    public static class Limit {
+        private long capacity;
+        private long refillPerMinute;
+
+        public Limit() {
+        }
+
+        public Limit(long capacity, long refillPerMinute) {
+            this.capacity = capacity;
+            this.refillPerMinute = refillPerMinute;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.codewithmosh.store.auth;
+
+import java.util.function.LongSupplier;
+
+public class TokenBucket {
+
+    private final long capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoTime;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(long capacity, long refillPerMinute) {
+        this(capacity, refillPerMinute, System::nanoTime);
+    }
+
+    //the clock is passed in so tests can move time forward without sleeping
+    TokenBucket(long capacity, long refillPerMinute, LongSupplier nanoTime) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / 60_000_000_000d;
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    public synchronized boolean tryConsume() {
+        var now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
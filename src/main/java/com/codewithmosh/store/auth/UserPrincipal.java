@@ -0,0 +1,21 @@
+package com.codewithmosh.store.auth;
+
+import com.codewithmosh.store.users.Role;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//the authenticated user as described by the access token, no database lookup is needed to build it
+@AllArgsConstructor
+@Getter
+public class UserPrincipal {
+    private Long id;
+    private String email;
+    private String name;
+    private Role role;
+
+    //Authentication.getName() falls back to this
+    @Override
+    public String toString() {
+        return id.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.codewithmosh.store.carts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+//deletes anonymous carts older than carts.expiry.max-age, cart_items go with them through ON DELETE CASCADE.
+//age is counted from date_created, not from the last change, so a cart still in use is purged once it is max-age old
+@Component
+public class AbandonedCartSweeper {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CartExpiryConfig cartExpiryConfig;
+    private final Counter purged;
+    private final Timer sweepTime;
+
+    public AbandonedCartSweeper(
+            JdbcTemplate jdbcTemplate,
+            CartExpiryConfig cartExpiryConfig,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cartExpiryConfig = cartExpiryConfig;
+        //date_created is a DATE, anything under a day would truncate to zero and purge today's carts too
+        if (cartExpiryConfig.getMaxAge().toDays() < 1) {
+            throw new IllegalArgumentException("carts.expiry.max-age must be at least one day");
+        }
+        this.purged = meterRegistry.counter("carts.expiry.purged");
+        this.sweepTime = meterRegistry.timer("carts.expiry.sweep");
+    }
+
+    @Scheduled(fixedDelayString = "#{@cartExpiryConfig.sweepInterval}", initialDelayString = "PT1M")
+    public void sweep() {
+        sweepTime.record(this::purgeExpired);
+    }
+
+    private void purgeExpired() {
+        var createdBefore = Date.valueOf(LocalDate.now().minusDays(cartExpiryConfig.getMaxAge().toDays()));
+        var chunkSize = cartExpiryConfig.getChunkSize();
+
+        int deleted;
+        do {
+            //each chunk is its own auto-committed statement, so locks are released before the next one
+            deleted = jdbcTemplate.update(
+                    "delete from carts where date_created < ? and customer_id is null order by date_created limit ?",
+                    createdBefore, chunkSize);
+            purged.increment(deleted);
+        } while (deleted == chunkSize && pause());
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(cartExpiryConfig.getPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.common.UuidV7;
 import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductNotFoundException;
+import com.codewithmosh.store.users.User;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
@@ -17,56 +26,188 @@ import java.util.UUID;
 @Table(name = "carts")
 public class Cart {
 
+    //the most of one product a cart can hold, the same limit the request validation uses
+    public static final int MAX_QUANTITY = 1000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     @Column(name = "id")
     private UUID id;
 
     @Column(name = "date_created", insertable = false, updatable = false)
     private LocalDate dateCreated;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    //null for anonymous carts
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id")
+    private User customer;
+
+    //running totals, kept up to date by the methods below and by CartRepository.refreshTotals for SQL-only changes
+    @Column(name = "total_price")
+    @Setter(AccessLevel.NONE)
+    private BigDecimal totalPrice = BigDecimal.ZERO;
+
+    @Column(name = "item_count")
+    @Setter(AccessLevel.NONE)
+    private int itemCount;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.MERGE, orphanRemoval = true, fetch = FetchType.EAGER)
     private Set<CartItem> items = new LinkedHashSet<>();
 
-    public BigDecimal getTotalPrice() {
-        return items.stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    //productId -> item, built on first use (e.g. after Hibernate loads the items) and kept in sync afterwards
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItem> itemsByProductId;
+
+    public void setItems(Set<CartItem> items) {
+        this.items = items;
+        this.itemsByProductId = null;
     }
 
     public CartItem getItem(Long productId) {
-        return items.stream().
-                filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .orElse(null);
+        return itemsByProductId().get(productId);
+    }
+
+    private Map<Long, CartItem> itemsByProductId() {
+        if (itemsByProductId == null) {
+            itemsByProductId = new HashMap<>();
+            items.forEach(item -> itemsByProductId.put(item.getProduct().getId(), item));
+        }
+        return itemsByProductId;
     }
 
     public CartItem addItem(Product product) {
+        return addItem(product, 1);
+    }
+
+    public CartItem addItem(Product product, int quantity) {
         //if the product in the cart already exist
         var cartItem = getItem(product.getId());
 
         if(cartItem!=null){
-            cartItem.setQuantity(cartItem.getQuantity()+1);
+            changeQuantity(cartItem, cartItem.getQuantity()+quantity);
         }else{
             cartItem = new CartItem();
             cartItem.setProduct(product);
-            cartItem.setQuantity(1);
+            cartItem.setQuantity(quantity);
             cartItem.setCart(this);
             items.add(cartItem);
+            itemsByProductId().put(product.getId(), cartItem);
+            addToTotals(product, quantity);
         }
         return cartItem;
     }
 
-    public void removeItem(Long productId) {
+    public void setQuantity(Long productId, int quantity) {
         var cartItem = getItem(productId);
+        if (cartItem == null) {
+            throw new ProductNotFoundException();
+        }
+        changeQuantity(cartItem, quantity);
+    }
+
+    //fold the operations into one target quantity per product (0 = remove), so a product that is
+    //removed and added again in the same batch keeps its row instead of hitting the unique key
+    public Map<Long, Integer> resolveQuantities(List<CartItemOperation> operations) {
+        var quantities = new LinkedHashMap<Long, Integer>();
+        for (var operation : operations) {
+            var productId = operation.getProductId();
+            var current = quantities.containsKey(productId)
+                    ? quantities.get(productId)
+                    : currentQuantity(productId);
+            var quantity = switch (operation.getType()) {
+                case SET -> operation.getQuantity();
+                case INCREMENT -> Math.min(
+                        current + (operation.getQuantity() != null ? operation.getQuantity() : 1), MAX_QUANTITY);
+                case REMOVE -> 0;
+            };
+            quantities.put(productId, quantity);
+        }
+        return quantities;
+    }
+
+    //products that end up in the cart but are not in it yet
+    public Set<Long> newProductIds(Map<Long, Integer> quantities) {
+        return quantities.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0 && getItem(entry.getKey()) == null)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    public void setQuantities(Map<Long, Integer> quantities, Map<Long, Product> newProducts) {
+        quantities.forEach((productId, quantity) -> {
+            var cartItem = getItem(productId);
+            if (quantity == 0) {
+                removeItem(productId);
+            } else if (cartItem != null) {
+                changeQuantity(cartItem, quantity);
+            } else {
+                addItem(newProducts.get(productId), quantity);
+            }
+        });
+    }
+
+    //takes ordered quantities out of the cart, what was added after the order was built stays in it
+    public void removeQuantities(Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            var cartItem = getItem(productId);
+            if (cartItem == null) {
+                return;
+            }
+            var remaining = cartItem.getQuantity() - quantity;
+            if (remaining > 0) {
+                changeQuantity(cartItem, remaining);
+            } else {
+                removeItem(productId);
+            }
+        });
+    }
+
+    //swaps in a changed copy of the product, the total follows its price
+    public void refreshProduct(Product product) {
+        var cartItem = getItem(product.getId());
+        if (cartItem != null) {
+            addToTotals(cartItem.getProduct(), -cartItem.getQuantity());
+            cartItem.setProduct(product);
+            addToTotals(product, cartItem.getQuantity());
+        }
+    }
+
+    private void changeQuantity(CartItem cartItem, int quantity) {
+        var delta = quantity - cartItem.getQuantity();
+        cartItem.setQuantity(quantity);
+        addToTotals(cartItem.getProduct(), delta);
+    }
+
+    private void addToTotals(Product product, int quantity) {
+        totalPrice = totalPrice.add(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+        itemCount += quantity;
+    }
+
+    private int currentQuantity(Long productId) {
+        var cartItem = getItem(productId);
+        return cartItem != null ? cartItem.getQuantity() : 0;
+    }
+
+    public void removeItem(Long productId) {
+        var cartItem = itemsByProductId().remove(productId);
         if(cartItem!=null){
             items.remove(cartItem);
             cartItem.setCart(null);
+            addToTotals(cartItem.getProduct(), -cartItem.getQuantity());
         }
     }
 
     public void clear(){
         items.clear();
+        itemsByProductId = null;
+        totalPrice = BigDecimal.ZERO;
+        itemCount = 0;
     }
 
     public boolean isEmpty(){
@@ -1,5 +1,6 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.auth.AuthService;
 import com.codewithmosh.store.common.ErrorDto;
 import com.codewithmosh.store.products.ProductNotFoundException;
 import io.swagger.v3.oas.annotations.Operation;
@@ -7,9 +8,13 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.UUID;
@@ -21,6 +26,7 @@ import java.util.UUID;
 public class CartController {
 
     private final CartService cartService;
+    private final AuthService authService;
 
     @PostMapping
     public ResponseEntity<CartDto> createCart(UriComponentsBuilder uriBuilder) {
@@ -35,25 +41,50 @@ public class CartController {
             @Parameter(description = "The ID of the cart.")
             @PathVariable UUID cartId,
             @RequestBody AddItemToCartRequest request) {
+        checkAccess(cartId);
         var cartItemDto = cartService.addToCart(cartId, request.getProductId());
         return ResponseEntity.status(HttpStatus.CREATED).body(cartItemDto);
     }
 
+    @GetMapping("/me")
+    @Operation(summary = "Gets the cart of the current user, it is created on first use.")
+    public CartDto getMyCart() {
+        return cartService.getCustomerCart(authService.getCurrentUserId());
+    }
+
+    //polling clients send the ETag back, an unchanged cart is answered with 304 from a version lookup
     @GetMapping("/{cartId}")
-    public CartDto getCart(@PathVariable UUID cartId) {
-        return cartService.getCart(cartId);
+    public ResponseEntity<CartDto> getCart(@PathVariable UUID cartId, WebRequest webRequest) {
+        checkAccess(cartId);
+        var eTag = "\"" + cartService.getCartVersion(cartId) + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        //checkNotModified has already put the ETag on the response
+        return ResponseEntity.ok(cartService.getCart(cartId));
     }
 
     @PutMapping("/{cartId}/items/{productId}")
     public CartItemDto updateItem(
             @PathVariable("cartId") UUID cartId, @PathVariable("productId") Long productId,
             @Valid  @RequestBody UpdateCartItemRequest request) {
+        checkAccess(cartId);
         return  cartService.updateItem(cartId, productId, request.getQuantity());
     }
 
+    @PatchMapping("/{cartId}/items")
+    @Operation(summary = "Applies a batch of set/increment/remove operations to the cart.")
+    public CartDto updateItems(
+            @PathVariable("cartId") UUID cartId,
+            @Valid @RequestBody UpdateCartItemsRequest request) {
+        checkAccess(cartId);
+        return cartService.updateItems(cartId, request.getOperations());
+    }
+
     @DeleteMapping("/{cartId}/items/{productId}")
     public ResponseEntity<?> removeItem(
             @PathVariable("cartId") UUID cartId, @PathVariable("productId") Long productId){
+        checkAccess(cartId);
         cartService.removeItem(cartId, productId);
         return ResponseEntity.noContent().build();
 
@@ -61,10 +92,15 @@ public class CartController {
 
     @DeleteMapping("/{cartId}/items")
     public ResponseEntity<?> clearCart(@PathVariable UUID cartId) {
+        checkAccess(cartId);
         cartService.clearCart(cartId);
         return ResponseEntity.noContent().build();
     }
 
+    private void checkAccess(UUID cartId) {
+        cartService.checkAccess(cartId, authService.findCurrentUserId());
+    }
+
     @ExceptionHandler(CartNotFoundException.class)
     public ResponseEntity<ErrorDto> handleCartNotFound(){
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
@@ -72,6 +108,21 @@ public class CartController {
         );
     }
 
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<ErrorDto> handleAccessDenied(Exception ex){
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
+                new ErrorDto(ex.getMessage())
+        );
+    }
+
+    //thrown once CartService has run out of retries
+    @ExceptionHandler({ConcurrencyFailureException.class, DuplicateKeyException.class})
+    public ResponseEntity<ErrorDto> handleConcurrentUpdate(){
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                new ErrorDto("Cart was changed by another request, please try again.")
+        );
+    }
+
     @ExceptionHandler(ProductNotFoundException.class)
     public ResponseEntity<ErrorDto> handleProductNotFound(){
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
@@ -13,4 +13,5 @@ public class CartDto {
     private UUID id;
     private List<CartItemDto> items = new ArrayList<>();
     private BigDecimal totalPrice = BigDecimal.ZERO;
+    private int itemCount;
 }
@@ -0,0 +1,17 @@
+package com.codewithmosh.store.carts;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "carts.expiry")
+public class CartExpiryConfig {
+    private Duration maxAge = Duration.ofDays(30); //counted from date_created in whole days, so at least 1d
+    private int chunkSize = 500; //small chunks keep each delete's row and cascade locks short
+    private Duration pause = Duration.ofMillis(200); //gives other writers room between chunks
+    private Duration sweepInterval = Duration.ofHours(1);
+}
@@ -30,7 +30,7 @@ public class CartItem {
     private Integer quantity;
 
     public BigDecimal getTotalPrice() {
-        return product.getPrice().multiply(new BigDecimal(quantity));
+        return product.getPrice().multiply(BigDecimal.valueOf(quantity));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.codewithmosh.store.carts;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class CartItemOperation {
+
+    @NotNull(message = "Operation type must be provided.")
+    private CartItemOperationType type;
+
+    @NotNull(message = "Product id must be provided.")
+    private Long productId;
+
+    //SET: the new quantity, INCREMENT: how many to add (1 when omitted), REMOVE: ignored
+    @Min(value = 1, message = "Quantity must be greater than zero.")
+    @Max(value =1000, message ="Quantity must be less than or equal to 1000.")
+    private Integer quantity;
+
+    @AssertTrue(message = "Quantity must be provided for SET.")
+    public boolean isQuantityProvided() {
+        return type != CartItemOperationType.SET || quantity != null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.codewithmosh.store.carts;
+
+public enum CartItemOperationType {
+    SET,
+    INCREMENT,
+    REMOVE
+}
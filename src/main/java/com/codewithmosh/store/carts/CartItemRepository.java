@@ -0,0 +1,53 @@
+package com.codewithmosh.store.carts;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    //relies on cart_items_cart_product_unique, the native space hint keeps Hibernate from clearing unrelated cache regions.
+    //quantities stop at Cart.MAX_QUANTITY, like an increment on the Cart aggregate
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_items"))
+    @Query(value = "insert into cart_items (cart_id, product_id, quantity) values (:cartId, :productId, 1) " +
+            "on duplicate key update quantity = least(quantity + 1, " + Cart.MAX_QUANTITY + ")", nativeQuery = true)
+    int addOrIncrement(@Param("cartId") byte[] cartId, @Param("productId") Long productId);
+
+    //one INSERT ... SELECT, products already in the target cart get the quantities added up to Cart.MAX_QUANTITY
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_items"))
+    @Query(value = "insert into cart_items (cart_id, product_id, quantity) " +
+            "select :targetCartId, i.product_id, i.quantity from cart_items i " +
+            "join carts c on c.id = i.cart_id and c.customer_id is null " +
+            "where i.cart_id = :sourceCartId " +
+            "on duplicate key update quantity = least(cart_items.quantity + i.quantity, " + Cart.MAX_QUANTITY + ")",
+            nativeQuery = true)
+    int mergeItems(@Param("targetCartId") byte[] targetCartId, @Param("sourceCartId") byte[] sourceCartId);
+
+    @Modifying
+    @Query("update CartItem i set i.quantity = :quantity where i.cart.id = :cartId and i.product.id = :productId")
+    int updateQuantity(
+            @Param("cartId") UUID cartId,
+            @Param("productId") Long productId,
+            @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId and i.product.id = :productId")
+    int deleteItem(@Param("cartId") UUID cartId, @Param("productId") Long productId);
+
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId")
+    int deleteAllItems(@Param("cartId") UUID cartId);
+
+    @Query("select new com.codewithmosh.store.carts.CartItemView(p.id, p.name, p.price, i.quantity) " +
+            "from CartItem i join i.product p where i.cart.id = :cartId and p.id = :productId")
+    Optional<CartItemView> findItemView(@Param("cartId") UUID cartId, @Param("productId") Long productId);
+}
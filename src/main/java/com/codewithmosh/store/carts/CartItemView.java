@@ -0,0 +1,20 @@
+package com.codewithmosh.store.carts;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+//narrow read of one cart line, built by a JPQL constructor expression
+@AllArgsConstructor
+@Getter
+public class CartItemView {
+    private Long productId;
+    private String productName;
+    private BigDecimal productPrice;
+    private Integer quantity;
+
+    public BigDecimal getTotalPrice() {
+        return productPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
@@ -6,10 +6,14 @@ import org.mapstruct.Mapping;
 @Mapper(componentModel = "spring")
 public interface CartMapper {
 
-    @Mapping(target ="totalPrice", expression = "java(cart.getTotalPrice())")
     CartDto toDto(Cart cart);
 
     @Mapping(target ="totalPrice", expression ="java(cartItem.getTotalPrice())")
     CartItemDto toDto(CartItem cartItem);
 
+    @Mapping(target = "product.id", source = "productId")
+    @Mapping(target = "product.name", source = "productName")
+    @Mapping(target = "product.price", source = "productPrice")
+    CartItemDto toDto(CartItemView cartItemView);
+
 }
@@ -1,8 +1,14 @@
 package com.codewithmosh.store.carts;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
@@ -13,4 +19,75 @@ public interface CartRepository extends JpaRepository<Cart, UUID> {
     @EntityGraph(attributePaths = "items.product")
     @Query("select c From Cart c WHERE c.id = :cartId")
     Optional<Cart> getCartWithItems(@Param("cartId")UUID cartId);
+
+    //the version is bumped (and checked) on commit even if only items changed, a concurrent writer makes it fail
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @EntityGraph(attributePaths = "items.product")
+    @Query("select c From Cart c WHERE c.id = :cartId")
+    Optional<Cart> getCartWithItemsForUpdate(@Param("cartId")UUID cartId);
+
+    //single-statement item changes bump the version themselves, 0 means the cart does not exist
+    @Modifying
+    @Query("update Cart c set c.version = c.version + 1 where c.id = :cartId")
+    int incrementVersion(@Param("cartId") UUID cartId);
+
+    //primary key lookup for conditional GETs, items and products are not read
+    @Query("select c.version from Cart c where c.id = :cartId")
+    Optional<Long> findVersion(@Param("cartId") UUID cartId);
+
+    //empty for an anonymous cart, the owner check needs nothing else
+    @Query("select u.id from Cart c join c.customer u where c.id = :cartId")
+    Optional<Long> findCustomerId(@Param("cartId") UUID cartId);
+
+    @Query("select c.id from Cart c where c.customer.id = :customerId")
+    Optional<UUID> findIdByCustomerId(@Param("customerId") Long customerId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "insert into carts (id, customer_id) values (:cartId, :customerId)", nativeQuery = true)
+    int insertCustomerCart(@Param("cartId") byte[] cartId, @Param("customerId") Long customerId);
+
+    //only an anonymous cart can be taken over
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "update carts set customer_id = :customerId, version = version + 1 " +
+            "where id = :cartId and customer_id is null", nativeQuery = true)
+    int claim(@Param("cartId") byte[] cartId, @Param("customerId") Long customerId);
+
+    //cart_items go with it through ON DELETE CASCADE
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "delete from carts where id = :cartId and customer_id is null", nativeQuery = true)
+    int deleteAnonymous(@Param("cartId") byte[] cartId);
+
+    //recomputes the running totals after item changes that bypass the Cart aggregate
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "update carts c set " +
+            "c.total_price = (select coalesce(sum(p.price * i.quantity), 0) from cart_items i " +
+            "join products p on p.id = i.product_id where i.cart_id = c.id), " +
+            "c.item_count = (select coalesce(sum(i.quantity), 0) from cart_items i where i.cart_id = c.id) " +
+            "where c.id = :cartId", nativeQuery = true)
+    int refreshTotals(@Param("cartId") byte[] cartId);
+
+    //after a price change, for every cart holding the product, in the transaction that changes the price
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "update carts c set " +
+            "c.total_price = (select coalesce(sum(p.price * i.quantity), 0) from cart_items i " +
+            "join products p on p.id = i.product_id where i.cart_id = c.id), " +
+            "c.version = c.version + 1 " +
+            "where c.id in (select i.cart_id from cart_items i where i.product_id = :productId)", nativeQuery = true)
+    int refreshTotalsForProduct(@Param("productId") Long productId);
+
+    //before a product is deleted, in the same transaction: its lines leave the totals
+    //(cart_items follows through ON DELETE CASCADE)
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "carts"))
+    @Query(value = "update carts c join cart_items i on i.cart_id = c.id join products p on p.id = i.product_id " +
+            "set c.total_price = c.total_price - p.price * i.quantity, " +
+            "c.item_count = c.item_count - i.quantity, " +
+            "c.version = c.version + 1 " +
+            "where i.product_id = :productId", nativeQuery = true)
+    int removeProductFromTotals(@Param("productId") Long productId);
 }
\ No newline at end of file
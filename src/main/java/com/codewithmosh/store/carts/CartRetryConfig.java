@@ -0,0 +1,15 @@
+package com.codewithmosh.store.carts;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "carts.retry")
+public class CartRetryConfig {
+    private int maxAttempts = 3;
+    private Duration backoff = Duration.ofMillis(20); //doubles per attempt, the actual pause is a random part of it
+}
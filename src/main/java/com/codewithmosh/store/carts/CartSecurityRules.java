@@ -10,6 +10,8 @@ import org.springframework.stereotype.Component;
 public class CartSecurityRules implements SecurityRules {
     @Override
     public void configure(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry registry) {
+        registry.requestMatchers("/carts/me").authenticated();
+        //guests use anonymous carts by id, CartController checks that an owned cart belongs to the caller
         registry.requestMatchers("/carts/**").permitAll();
     }
 }
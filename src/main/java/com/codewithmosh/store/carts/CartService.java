@@ -1,82 +1,134 @@
 package com.codewithmosh.store.carts;
 
-import com.codewithmosh.store.products.ProductNotFoundException;
-import com.codewithmosh.store.products.ProductRepository;
+import com.codewithmosh.store.products.Product;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 @AllArgsConstructor
 public class CartService {
 
-    private CartRepository cartRepository;
-    private CartMapper cartMapper;
-    private ProductRepository productRepository;
+    private CartStore cartStore;
+    private CartRetryConfig cartRetryConfig;
+    private CustomerCarts customerCarts;
 
     public CartDto createCart(){
-        var cart = new Cart();
-        cartRepository.save(cart);
-        return cartMapper.toDto(cart);
+        return cartStore.createCart();
     }
 
     public CartItemDto addToCart(UUID cartId, Long productId){
-        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
-        if (cart == null) {
-          throw new CartNotFoundException();
-        }
+        return retry(() -> cartStore.addToCart(cartId, productId));
+    }
 
-        var product = productRepository.findById(productId).orElse(null);
-        if (product == null) {
-            throw new ProductNotFoundException();
-        }
+    public CartDto getCart(UUID cartId){
+        return cartStore.getCart(cartId);
+    }
 
-        var cartItem = cart.addItem(product);
-        cartRepository.save(cart);
-        return cartMapper.toDto(cartItem);
+    public long getCartVersion(UUID cartId){
+        return cartStore.getVersion(cartId);
     }
 
-    public CartDto getCart(UUID cartId){
-        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
-        if (cart == null) {
-           throw new CartNotFoundException();
+    //anonymous carts are open to anyone holding the id, an owned cart only to its owner (userId is null for guests)
+    public void checkAccess(UUID cartId, Long userId){
+        var customerId = cartStore.getCustomerId(cartId);
+        if (customerId != null && !customerId.equals(userId)) {
+            throw new AccessDeniedException("You do not have permission to access this cart");
         }
-        return cartMapper.toDto(cart);
     }
 
     public CartItemDto updateItem(UUID cartId, Long productId, Integer quantity){
-        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
-        if(cart == null){
-            throw new CartNotFoundException();
-        }
+        return retry(() -> cartStore.updateItem(cartId, productId, quantity));
+    }
 
-        var cartItem = cart.getItem(productId);
-        if(cartItem==null){
-          throw new ProductNotFoundException();
-        }
+    public void removeItem(UUID cartId, Long productId){
+        retry(() -> {
+            cartStore.removeItem(cartId, productId);
+            return null;
+        });
+    }
 
-        cartItem.setQuantity(quantity);
-        cartRepository.save(cart);
-        return cartMapper.toDto(cartItem);
+    public void clearCart(UUID cartId){
+        retry(() -> {
+            cartStore.clearCart(cartId);
+            return null;
+        });
     }
 
-    public void removeItem(UUID cartId, Long productId){
-        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
-        if(cart == null){
-           throw new CartNotFoundException();
+    public void removeQuantities(UUID cartId, Map<Long, Integer> quantities){
+        retry(() -> {
+            cartStore.removeQuantities(cartId, quantities);
+            return null;
+        });
+    }
+
+    public CartDto updateItems(UUID cartId, List<CartItemOperation> operations){
+        return retry(() -> cartStore.updateItems(cartId, operations));
+    }
+
+    public void flush(UUID cartId){
+        cartStore.flush(cartId);
+    }
+
+    public void refreshProduct(Product product){
+        cartStore.refreshProduct(product);
+    }
+
+    public void removeProduct(Long productId){
+        cartStore.removeProduct(productId);
+    }
+
+    public CartDto getCustomerCart(Long customerId){
+        var cartId = retry(() -> customerCarts.findOrCreateCartId(customerId));
+        return cartStore.getCart(cartId);
+    }
+
+    //the merge runs in MySQL, so buffered changes go out first and buffered copies are dropped afterwards
+    public void mergeIntoCustomerCart(Long customerId, UUID anonymousCartId){
+        cartStore.flush(anonymousCartId);
+        var existingCartId = customerCarts.findCartId(customerId);
+        if (existingCartId != null) {
+            cartStore.flush(existingCartId);
         }
 
-        cart.removeItem(productId);
-        cartRepository.save(cart);
+        var customerCartId = retry(() -> customerCarts.merge(customerId, anonymousCartId));
+        cartStore.invalidate(anonymousCartId);
+        cartStore.invalidate(customerCartId);
     }
 
-    public void clearCart(UUID cartId){
-        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
-        if(cart == null){
-           throw new CartNotFoundException();
+    //callers must not run inside a transaction: each attempt has its own, a writer that lost the version race
+    //starts over on fresh state
+    private <T> T retry(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException | DuplicateKeyException ex) {
+                //a concurrent insert of the same product or customer cart shows up as a unique key violation,
+                //any other integrity violation fails the same way on every attempt
+                if (attempt >= cartRetryConfig.getMaxAttempts()) {
+                    throw ex;
+                }
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        //full jitter, so writers that collided do not collide again on the next attempt
+        var maxMillis = cartRetryConfig.getBackoff().toMillis() << (attempt - 1);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Interrupted while waiting to retry a cart update.", e);
         }
-        cart.clear();
-        cartRepository.save(cart);
     }
 }
@@ -0,0 +1,18 @@
+package com.codewithmosh.store.carts;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "carts.storage")
+public class CartStorageConfig {
+    private String mode = "database"; //database or memory (write-behind, single instance or sticky sessions only)
+    private long maximumSize = 100_000; //carts kept in memory, dirty carts stay until they are flushed
+    private int lockStripes = 256;
+    private Duration flushInterval = Duration.ofMillis(500);
+    private int flushBatchSize = 500;
+}
@@ -0,0 +1,45 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+//where carts live, selected with carts.storage.mode (database or memory)
+public interface CartStore {
+    CartDto createCart();
+
+    CartItemDto addToCart(UUID cartId, Long productId);
+
+    CartDto getCart(UUID cartId);
+
+    //changes with every mutation of the cart
+    long getVersion(UUID cartId);
+
+    //the user owning the cart, null for an anonymous cart
+    Long getCustomerId(UUID cartId);
+
+    CartItemDto updateItem(UUID cartId, Long productId, Integer quantity);
+
+    void removeItem(UUID cartId, Long productId);
+
+    void clearCart(UUID cartId);
+
+    //after checkout, productId -> ordered quantity; lines added or raised meanwhile keep the difference
+    void removeQuantities(UUID cartId, Map<Long, Integer> quantities);
+
+    CartDto updateItems(UUID cartId, List<CartItemOperation> operations);
+
+    //makes the latest state of the cart visible to readers that go to MySQL directly
+    void flush(UUID cartId);
+
+    //drops any buffered copy after the cart was changed in MySQL directly
+    void invalidate(UUID cartId);
+
+    //called after the product was changed, buffered carts must use its new price
+    void refreshProduct(Product product);
+
+    //called after the product was deleted, buffered carts must not keep its lines
+    void removeProduct(Long productId);
+}
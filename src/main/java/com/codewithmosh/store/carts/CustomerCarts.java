@@ -0,0 +1,60 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.UuidBytes;
+import com.codewithmosh.store.common.UuidV7Generator;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+//carts owned by a user, found through the unique carts.customer_id index
+@Component
+@AllArgsConstructor
+public class CustomerCarts {
+
+    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
+
+    @Transactional(readOnly = true)
+    public UUID findCartId(Long customerId) {
+        return cartRepository.findIdByCustomerId(customerId).orElse(null);
+    }
+
+    @Transactional
+    public UUID findOrCreateCartId(Long customerId) {
+        var cartId = findCartId(customerId);
+        if (cartId == null) {
+            //a concurrent create for the same customer fails on the unique key and is retried by CartService
+            cartId = UuidV7Generator.next();
+            cartRepository.insertCustomerCart(UuidBytes.toBytes(cartId), customerId);
+        }
+        return cartId;
+    }
+
+    //moves the items of an anonymous cart into the customer's cart, quantities of shared products are added up
+    @Transactional
+    public UUID merge(Long customerId, UUID anonymousCartId) {
+        var anonymousCart = UuidBytes.toBytes(anonymousCartId);
+        var customerCartId = findCartId(customerId);
+        if (customerCartId == null) {
+            //the anonymous cart simply becomes the customer's cart
+            if (cartRepository.claim(anonymousCart, customerId) > 0) {
+                return anonymousCartId;
+            }
+            return findOrCreateCartId(customerId);
+        }
+
+        if (customerCartId.equals(anonymousCartId)) {
+            return customerCartId;
+        }
+
+        var customerCart = UuidBytes.toBytes(customerCartId);
+        cartRepository.incrementVersion(customerCartId);
+        if (cartItemRepository.mergeItems(customerCart, anonymousCart) > 0) {
+            cartRepository.refreshTotals(customerCart);
+        }
+        cartRepository.deleteAnonymous(anonymousCart);
+        return customerCartId;
+    }
+}
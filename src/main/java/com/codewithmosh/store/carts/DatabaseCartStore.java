@@ -0,0 +1,164 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.UuidBytes;
+import com.codewithmosh.store.products.CatalogCache;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductNotFoundException;
+import com.codewithmosh.store.products.ProductRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//every cart operation goes straight to MySQL, the default storage mode
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "carts.storage", name = "mode", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
+    private CartMapper cartMapper;
+    private CatalogCache catalogCache;
+    private ProductRepository productRepository;
+
+    @Override
+    public CartDto createCart(){
+        var cart = new Cart();
+        cartRepository.save(cart);
+        return cartMapper.toDto(cart);
+    }
+
+    //one upsert on cart_items instead of loading and merging the whole cart
+    @Override
+    @Transactional
+    public CartItemDto addToCart(UUID cartId, Long productId){
+        if (cartRepository.incrementVersion(cartId) == 0) {
+          throw new CartNotFoundException();
+        }
+
+        if (catalogCache.findProduct(productId).isEmpty()) {
+            throw new ProductNotFoundException();
+        }
+
+        cartItemRepository.addOrIncrement(UuidBytes.toBytes(cartId), productId);
+        cartRepository.refreshTotals(UuidBytes.toBytes(cartId));
+        return getItem(cartId, productId);
+    }
+
+    @Override
+    public CartDto getCart(UUID cartId){
+        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
+        if (cart == null) {
+           throw new CartNotFoundException();
+        }
+        return cartMapper.toDto(cart);
+    }
+
+    @Override
+    public long getVersion(UUID cartId){
+        return cartRepository.findVersion(cartId).orElseThrow(CartNotFoundException::new);
+    }
+
+    @Override
+    public Long getCustomerId(UUID cartId){
+        return cartRepository.findCustomerId(cartId).orElse(null);
+    }
+
+    @Override
+    @Transactional
+    public CartItemDto updateItem(UUID cartId, Long productId, Integer quantity){
+        if (cartRepository.incrementVersion(cartId) == 0) {
+            throw new CartNotFoundException();
+        }
+        if (cartItemRepository.updateQuantity(cartId, productId, quantity) == 0) {
+            throw new ProductNotFoundException();
+        }
+        cartRepository.refreshTotals(UuidBytes.toBytes(cartId));
+        return getItem(cartId, productId);
+    }
+
+    @Override
+    @Transactional
+    public void removeItem(UUID cartId, Long productId){
+        if (cartRepository.incrementVersion(cartId) == 0) {
+           throw new CartNotFoundException();
+        }
+        if (cartItemRepository.deleteItem(cartId, productId) > 0) {
+            cartRepository.refreshTotals(UuidBytes.toBytes(cartId));
+        }
+    }
+
+    @Override
+    @Transactional
+    public void clearCart(UUID cartId){
+        if (cartRepository.incrementVersion(cartId) == 0) {
+           throw new CartNotFoundException();
+        }
+        cartItemRepository.deleteAllItems(cartId);
+        cartRepository.refreshTotals(UuidBytes.toBytes(cartId));
+    }
+
+    @Override
+    @Transactional
+    public void removeQuantities(UUID cartId, Map<Long, Integer> quantities){
+        var cart = cartRepository.getCartWithItemsForUpdate(cartId).orElseThrow(CartNotFoundException::new);
+        cart.removeQuantities(quantities);
+        cartRepository.save(cart);
+    }
+
+    //applies every operation to the loaded cart and writes it back in a single flush
+    @Override
+    @Transactional
+    public CartDto updateItems(UUID cartId, List<CartItemOperation> operations){
+        var cart = cartRepository.getCartWithItemsForUpdate(cartId).orElse(null);
+        if(cart == null){
+            throw new CartNotFoundException();
+        }
+
+        var quantities = cart.resolveQuantities(operations);
+
+        //resolve every product that is not in the cart yet with one query
+        var newProductIds = cart.newProductIds(quantities);
+        var products = productRepository.findAllById(newProductIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        if (products.size() != newProductIds.size()) {
+            throw new ProductNotFoundException();
+        }
+        cart.setQuantities(quantities, products);
+
+        cartRepository.save(cart);
+        return cartMapper.toDto(cart);
+    }
+
+    @Override
+    public void flush(UUID cartId) {
+        //nothing is buffered, every change is already in MySQL
+    }
+
+    @Override
+    public void invalidate(UUID cartId) {
+        //nothing is buffered
+    }
+
+    @Override
+    public void refreshProduct(Product product) {
+        //the totals were refreshed in MySQL together with the product
+    }
+
+    @Override
+    public void removeProduct(Long productId) {
+        //cart_items followed the product through ON DELETE CASCADE
+    }
+
+    private CartItemDto getItem(UUID cartId, Long productId) {
+        var cartItem = cartItemRepository.findItemView(cartId, productId).orElseThrow(ProductNotFoundException::new);
+        return cartMapper.toDto(cartItem);
+    }
+}
@@ -0,0 +1,490 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.UuidBytes;
+import com.codewithmosh.store.common.UuidV7Generator;
+import com.codewithmosh.store.products.CatalogCache;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductNotFoundException;
+import com.codewithmosh.store.products.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+//write-behind storage: carts are changed in memory and dirty carts are written to MySQL in batches.
+//each instance holds its own copies, so this mode needs a single instance or sticky sessions by cart id:
+//two instances changing the same cart would overwrite each other's lines on flush
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "carts.storage", name = "mode", havingValue = "memory")
+public class InMemoryCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final CatalogCache catalogCache;
+    private final CartMapper cartMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartStorageConfig cartStorageConfig;
+    private final Cache<UUID, Cart> carts;
+    private final ReentrantLock[] locks;
+
+    //changed carts waiting to be written, they stay reachable here even if the cache evicts them
+    private final Map<UUID, Cart> dirty = new ConcurrentHashMap<>();
+    //carts taken out of dirty whose write has not committed yet, a miss must not reload them from MySQL
+    private final Map<UUID, Cart> flushing = new ConcurrentHashMap<>();
+    //carts created here that have no row yet, every other cart is only updated, so a cart the sweeper
+    //or a merge deleted meanwhile is not brought back
+    private final Set<UUID> unsaved = ConcurrentHashMap.newKeySet();
+    //a cart is never written by two flushes at once, so an older snapshot cannot overwrite a newer one
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Timer flushTime;
+    private final Counter quarantined;
+
+    public InMemoryCartStore(
+            CartRepository cartRepository,
+            ProductRepository productRepository,
+            CatalogCache catalogCache,
+            CartMapper cartMapper,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            CartStorageConfig cartStorageConfig,
+            MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+        this.cartMapper = cartMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cartStorageConfig = cartStorageConfig;
+
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(cartStorageConfig.getMaximumSize())
+                .recordStats()
+                .build();
+        this.locks = new ReentrantLock[cartStorageConfig.getLockStripes()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        CaffeineCacheMetrics.monitor(meterRegistry, carts, "carts");
+        meterRegistry.gaugeMapSize("carts.storage.dirty", List.of(), dirty);
+        this.flushTime = meterRegistry.timer("carts.storage.flush");
+        this.quarantined = meterRegistry.counter("carts.storage.quarantined");
+    }
+
+    @Override
+    public CartDto createCart() {
+        var cart = new Cart();
+        cart.setId(UuidV7Generator.next());
+        cart.setDateCreated(LocalDate.now());
+        cart.setVersion(0L);
+        return withCart(cart.getId(), () -> {
+            carts.put(cart.getId(), cart);
+            unsaved.add(cart.getId());
+            dirty.put(cart.getId(), cart);
+            return cartMapper.toDto(cart);
+        });
+    }
+
+    @Override
+    public CartItemDto addToCart(UUID cartId, Long productId) {
+        var product = catalogCache.findProduct(productId).orElseThrow(ProductNotFoundException::new);
+        return update(cartId, cart -> cartMapper.toDto(cart.addItem(product)));
+    }
+
+    @Override
+    public CartDto getCart(UUID cartId) {
+        return withCart(cartId, () -> cartMapper.toDto(load(cartId)));
+    }
+
+    @Override
+    public long getVersion(UUID cartId) {
+        //a miss reads only the version column, polling a cart must not load its items
+        return withCart(cartId, () -> {
+            var cart = held(cartId);
+            if (cart == null) {
+                return cartRepository.findVersion(cartId).orElseThrow(CartNotFoundException::new);
+            }
+            return cart.getVersion();
+        });
+    }
+
+    @Override
+    public Long getCustomerId(UUID cartId) {
+        //a cart only changes owner in MySQL (claim on login), which invalidates the copy held here
+        return withCart(cartId, () -> {
+            var cart = held(cartId);
+            if (cart == null) {
+                return cartRepository.findCustomerId(cartId).orElse(null);
+            }
+            return cart.getCustomer() == null ? null : cart.getCustomer().getId();
+        });
+    }
+
+    @Override
+    public CartItemDto updateItem(UUID cartId, Long productId, Integer quantity) {
+        return update(cartId, cart -> {
+            cart.setQuantity(productId, quantity);
+            return cartMapper.toDto(cart.getItem(productId));
+        });
+    }
+
+    @Override
+    public void removeItem(UUID cartId, Long productId) {
+        update(cartId, cart -> {
+            cart.removeItem(productId);
+            return null;
+        });
+    }
+
+    @Override
+    public void clearCart(UUID cartId) {
+        update(cartId, cart -> {
+            cart.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public void removeQuantities(UUID cartId, Map<Long, Integer> quantities) {
+        update(cartId, cart -> {
+            cart.removeQuantities(quantities);
+            return null;
+        });
+    }
+
+    @Override
+    public CartDto updateItems(UUID cartId, List<CartItemOperation> operations) {
+        //products are looked up before the cart lock is taken
+        var productIds = operations.stream()
+                .filter(operation -> operation.getType() != CartItemOperationType.REMOVE)
+                .map(CartItemOperation::getProductId)
+                .collect(Collectors.toSet());
+        var products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        return update(cartId, cart -> {
+            var quantities = cart.resolveQuantities(operations);
+            if (!products.keySet().containsAll(cart.newProductIds(quantities))) {
+                throw new ProductNotFoundException();
+            }
+            cart.setQuantities(quantities, products);
+            return cartMapper.toDto(cart);
+        });
+    }
+
+    @Override
+    public void flush(UUID cartId) {
+        flushLock.lock();
+        try {
+            var batch = takeDirty(List.of(cartId));
+            write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(UUID cartId) {
+        //changes made after the last flush are dropped, MySQL holds the newer state now
+        withCart(cartId, () -> {
+            carts.invalidate(cartId);
+            dirty.remove(cartId);
+            return null;
+        });
+    }
+
+    @Override
+    public void refreshProduct(Product product) {
+        //held lines still point at the old Product, the next flush would write totals with the old price
+        updateHeldCarts(product.getId(), cart -> cart.refreshProduct(product));
+    }
+
+    @Override
+    public void removeProduct(Long productId) {
+        //MySQL dropped the product's lines through ON DELETE CASCADE, the copies held here follow
+        updateHeldCarts(productId, cart -> cart.removeItem(productId));
+    }
+
+    @Scheduled(fixedDelayString = "#{@cartStorageConfig.flushInterval}")
+    public void flushDirty() {
+        flushLock.lock();
+        try {
+            drainDirty();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            //stops early only if MySQL is unreachable
+            var written = true;
+            while (written && !dirty.isEmpty()) {
+                written = drainDirty();
+            }
+            if (!dirty.isEmpty()) {
+                log.error("{} carts could not be written before shutdown", dirty.size());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    //false when a cart was put back after a failure that may go away, the next flush tries again
+    private boolean drainDirty() {
+        List<CartSnapshot> batch;
+        boolean written;
+        do {
+            var cartIds = dirty.keySet().stream()
+                    .limit(cartStorageConfig.getFlushBatchSize())
+                    .toList();
+            batch = takeDirty(cartIds);
+            written = write(batch);
+        } while (written && batch.size() == cartStorageConfig.getFlushBatchSize());
+        return written;
+    }
+
+    private <T> T update(UUID cartId, Function<Cart, T> change) {
+        return withCart(cartId, () -> {
+            var cart = load(cartId);
+            var result = change.apply(cart);
+            cart.setVersion(cart.getVersion() + 1);
+            dirty.put(cartId, cart);
+            return result;
+        });
+    }
+
+    //changes every cart held in memory that has a line for the product, they are written with the next flush
+    private void updateHeldCarts(Long productId, Consumer<Cart> change) {
+        var cartIds = new HashSet<>(carts.asMap().keySet());
+        cartIds.addAll(dirty.keySet());
+        cartIds.addAll(flushing.keySet());
+        for (var cartId : cartIds) {
+            withCart(cartId, () -> {
+                var cart = held(cartId);
+                if (cart != null && cart.getItem(productId) != null) {
+                    change.accept(cart);
+                    cart.setVersion(cart.getVersion() + 1);
+                    dirty.put(cartId, cart);
+                }
+                return null;
+            });
+        }
+    }
+
+    //the caller holds the cart's lock
+    private Cart load(UUID cartId) {
+        var cart = held(cartId);
+        if (cart == null) {
+            cart = cartRepository.getCartWithItems(cartId).orElseThrow(CartNotFoundException::new);
+        }
+        carts.put(cartId, cart);
+        return cart;
+    }
+
+    //the caller holds the cart's lock
+    private Cart held(UUID cartId) {
+        var cart = carts.getIfPresent(cartId);
+        if (cart == null) {
+            cart = dirty.get(cartId);
+        }
+        if (cart == null) {
+            cart = flushing.get(cartId);
+        }
+        return cart;
+    }
+
+    private <T> T withCart(UUID cartId, Supplier<T> action) {
+        var lock = locks[Math.floorMod(cartId.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //copies each cart's items under its lock, requests for other carts are not blocked by the write
+    private List<CartSnapshot> takeDirty(List<UUID> cartIds) {
+        var batch = new ArrayList<CartSnapshot>();
+        for (var cartId : cartIds) {
+            withCart(cartId, () -> {
+                var cart = dirty.remove(cartId);
+                if (cart != null) {
+                    flushing.put(cartId, cart);
+                    var quantities = cart.getItems().stream()
+                            .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity));
+                    batch.add(new CartSnapshot(cart, quantities, cart.getTotalPrice(), cart.getItemCount(),
+                            cart.getVersion(), unsaved.contains(cartId)));
+                }
+                return null;
+            });
+        }
+        return batch;
+    }
+
+    //false when a cart had to be put back for the next flush
+    private boolean write(List<CartSnapshot> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        try {
+            writeInTransaction(batch);
+            return true;
+        } catch (RuntimeException ex) {
+            //one bad cart must not hold back the others, each cart of the failed batch gets its own transaction
+            var written = true;
+            for (var snapshot : batch) {
+                if (written) {
+                    written = writeAlone(snapshot);
+                } else {
+                    //MySQL looks unreachable, the rest waits for the next flush
+                    requeue(snapshot);
+                }
+            }
+            return written;
+        } finally {
+            batch.forEach(snapshot -> flushing.remove(snapshot.getCart().getId(), snapshot.getCart()));
+        }
+    }
+
+    private boolean writeAlone(CartSnapshot snapshot) {
+        try {
+            writeInTransaction(List.of(snapshot));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            //retrying cannot help, the cart is taken out instead of failing every following flush
+            quarantine(snapshot, ex);
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Cart {} could not be written, retrying with the next flush", snapshot.getCart().getId(), ex);
+            requeue(snapshot);
+            return false;
+        }
+    }
+
+    private void writeInTransaction(List<CartSnapshot> batch) {
+        var gone = flushTime.record(() -> transactionTemplate.execute(status -> writeBatch(batch)));
+        batch.forEach(snapshot -> unsaved.remove(snapshot.getCart().getId()));
+        gone.forEach(this::drop);
+    }
+
+    //nothing was written, the cart is retried with the next flush unless it changed meanwhile
+    private void requeue(CartSnapshot snapshot) {
+        dirty.putIfAbsent(snapshot.getCart().getId(), snapshot.getCart());
+    }
+
+    //returns the carts whose row no longer exists
+    private List<UUID> writeBatch(List<CartSnapshot> batch) {
+        var inserts = batch.stream().filter(CartSnapshot::isUnsaved).toList();
+        var updates = batch.stream().filter(snapshot -> !snapshot.isUnsaved()).toList();
+
+        jdbcTemplate.batchUpdate(
+                "insert into carts (id, date_created, total_price, item_count, version) values (?, ?, ?, ?, ?)",
+                inserts, Math.max(inserts.size(), 1),
+                (statement, snapshot) -> {
+                    statement.setBytes(1, UuidBytes.toBytes(snapshot.getCart().getId()));
+                    statement.setDate(2, Date.valueOf(snapshot.getCart().getDateCreated()));
+                    statement.setBigDecimal(3, snapshot.getTotalPrice());
+                    statement.setInt(4, snapshot.getItemCount());
+                    statement.setLong(5, snapshot.getVersion());
+                });
+        var updateCounts = jdbcTemplate.batchUpdate(
+                //the version never goes back, even if MySQL changed the cart meanwhile
+                "update carts set version = greatest(version + 1, ?), total_price = ?, item_count = ? where id = ?",
+                updates, Math.max(updates.size(), 1),
+                (statement, snapshot) -> {
+                    statement.setLong(1, snapshot.getVersion());
+                    statement.setBigDecimal(2, snapshot.getTotalPrice());
+                    statement.setInt(3, snapshot.getItemCount());
+                    statement.setBytes(4, UuidBytes.toBytes(snapshot.getCart().getId()));
+                });
+
+        var gone = new ArrayList<UUID>();
+        var written = new ArrayList<>(inserts);
+        for (int i = 0; i < updates.size(); i++) {
+            if (updateCounts[0][i] == 0) {
+                gone.add(updates.get(i).getCart().getId());
+            } else {
+                written.add(updates.get(i));
+            }
+        }
+
+        var items = written.stream()
+                .flatMap(snapshot -> snapshot.getQuantities().entrySet().stream()
+                        .map(entry -> new Object[]{
+                                UuidBytes.toBytes(snapshot.getCart().getId()), entry.getValue(), entry.getKey()}))
+                .toList();
+        jdbcTemplate.batchUpdate(
+                "delete from cart_items where cart_id = ?",
+                written, Math.max(written.size(), 1),
+                (statement, snapshot) -> statement.setBytes(1, UuidBytes.toBytes(snapshot.getCart().getId())));
+        //a product deleted since the cart was changed is skipped instead of failing on the foreign key
+        jdbcTemplate.batchUpdate(
+                "insert into cart_items (cart_id, product_id, quantity) select ?, id, ? from products where id = ?",
+                items);
+        return gone;
+    }
+
+    //the cart was deleted in MySQL (expired or merged), the copy held here goes as well
+    private void drop(UUID cartId) {
+        withCart(cartId, () -> {
+            carts.invalidate(cartId);
+            dirty.remove(cartId);
+            return null;
+        });
+    }
+
+    //the cart can never be written as it is, it is dropped so the next request reads what MySQL has
+    private void quarantine(CartSnapshot snapshot, RuntimeException ex) {
+        var cartId = snapshot.getCart().getId();
+        log.error("Cart {} could not be written and was dropped from memory", cartId, ex);
+        quarantined.increment();
+        unsaved.remove(cartId);
+        drop(cartId);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class CartSnapshot {
+        private Cart cart;
+        private Map<Long, Integer> quantities;
+        private BigDecimal totalPrice;
+        private int itemCount;
+        private long version;
+        private boolean unsaved;
+    }
+}
@@ -0,0 +1,16 @@
+package com.codewithmosh.store.carts;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UpdateCartItemsRequest {
+
+    @NotEmpty(message = "At least one operation must be provided.")
+    @Size(max = 1000, message = "At most 1000 operations can be sent at once.")
+    private List<@Valid CartItemOperation> operations;
+}
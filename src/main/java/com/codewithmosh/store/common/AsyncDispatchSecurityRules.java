@@ -0,0 +1,18 @@
+package com.codewithmosh.store.common;
+
+import jakarta.servlet.DispatcherType;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AuthorizeHttpRequestsConfigurer;
+import org.springframework.stereotype.Component;
+
+//the request was authorized before it went async (SSE, streaming bodies), the async dispatch carries no JWT
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AsyncDispatchSecurityRules implements SecurityRules {
+    @Override
+    public void configure(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry registry) {
+        registry.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
+    }
+}
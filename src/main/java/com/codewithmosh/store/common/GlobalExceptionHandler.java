@@ -1,5 +1,6 @@
 package com.codewithmosh.store.common;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -28,4 +29,11 @@ public class GlobalExceptionHandler {
                 new ErrorDto("Invalid request body.")
         );
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorDto> handleTooManyRequests(Exception ex){
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(
+                new ErrorDto(ex.getMessage())
+        );
+    }
 }
@@ -0,0 +1,16 @@
+package com.codewithmosh.store.common;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "idempotency")
+public class IdempotencyConfig {
+    private Duration window = Duration.ofHours(24);
+    private Duration reservationLease = Duration.ofMinutes(1); //longer than the slowest request, checkout included
+    private long cacheSize = 10_000;
+}
@@ -0,0 +1,94 @@
+package com.codewithmosh.store.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.List;
+
+//records the response of a request carrying an Idempotency-Key header and replays it for retries
+@AllArgsConstructor
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final List<String> IDEMPOTENT_PATHS = List.of("/checkout", "/carts/*/items");
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || IDEMPOTENT_PATHS.stream().noneMatch(path -> PATH_MATCHER.match(path, request.getRequestURI()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        var principal = authentication == null ? "" : authentication.getName();
+        var id = idempotencyStore.recordId(request.getMethod(), request.getRequestURI(), principal, request.getHeader(HEADER));
+
+        var completed = idempotencyStore.findCompleted(id);
+        if (completed.isEmpty() && !idempotencyStore.reserve(id)) {
+            //another request with the same key finished or is still running
+            completed = idempotencyStore.findCompleted(id);
+            if (completed.isEmpty()) {
+                writeError(response, HttpStatus.CONFLICT, "A request with this idempotency key is in progress.");
+                return;
+            }
+        }
+
+        if (completed.isPresent()) {
+            var record = completed.get();
+            response.setStatus(record.getStatusCode());
+            if (record.getContentType() != null) {
+                response.setContentType(record.getContentType());
+            }
+            response.setHeader("Idempotent-Replayed", "true");
+            if (record.getBody() != null) {
+                response.getOutputStream().write(record.getBody());
+            }
+            return;
+        }
+
+        var responseWrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+        } catch (Exception ex) {
+            idempotencyStore.release(id);
+            throw ex;
+        }
+
+        //server errors and transient rejections (a lost update conflict, a throttle) are not recorded,
+        //so a retry with the same key can still succeed
+        var status = responseWrapper.getStatus();
+        if (status >= 500 || status == HttpStatus.CONFLICT.value() || status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            idempotencyStore.release(id);
+        } else {
+            idempotencyStore.complete(id, responseWrapper.getStatus(), responseWrapper.getContentType(),
+                    responseWrapper.getContentAsByteArray());
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorDto(message));
+    }
+}
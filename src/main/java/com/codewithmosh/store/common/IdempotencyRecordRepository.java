@@ -0,0 +1,51 @@
+package com.codewithmosh.store.common;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    //returns 0 when the key is already taken
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "idempotency_keys"))
+    @Query(value = "insert ignore into idempotency_keys (id, expires_at, reserved_until) " +
+            "values (:id, :expiresAt, :reservedUntil)", nativeQuery = true)
+    int reserve(
+            @Param("id") String id,
+            @Param("expiresAt") LocalDateTime expiresAt,
+            @Param("reservedUntil") LocalDateTime reservedUntil);
+
+    //takes over a reservation whose request did not complete within its lease, 0 when another request holds it
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.reservedUntil = :reservedUntil " +
+            "where r.id = :id and r.statusCode is null and (r.reservedUntil is null or r.reservedUntil < :now)")
+    int takeOver(
+            @Param("id") String id,
+            @Param("reservedUntil") LocalDateTime reservedUntil,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.statusCode = :statusCode, r.contentType = :contentType, r.body = :body, " +
+            "r.reservedUntil = null where r.id = :id")
+    int complete(
+            @Param("id") String id,
+            @Param("statusCode") Integer statusCode,
+            @Param("contentType") String contentType,
+            @Param("body") byte[] body);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,88 @@
+package com.codewithmosh.store.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+
+//completed responses are kept in memory in front of the idempotency_keys table
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final IdempotencyConfig idempotencyConfig;
+    private final Cache<String, IdempotencyRecord> completed;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository, IdempotencyConfig idempotencyConfig) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.idempotencyConfig = idempotencyConfig;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(idempotencyConfig.getCacheSize())
+                .expireAfterWrite(idempotencyConfig.getWindow())
+                .build();
+    }
+
+    public String recordId(String method, String path, String principal, String key) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", method, path, principal, key).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<IdempotencyRecord> findCompleted(String id) {
+        var record = completed.getIfPresent(id);
+        if (record != null) {
+            return Optional.of(record);
+        }
+
+        record = idempotencyRecordRepository.findById(id).orElse(null);
+        if (record == null || !record.isCompleted() || record.isExpired()) {
+            return Optional.empty();
+        }
+        completed.put(id, record);
+        return Optional.of(record);
+    }
+
+    public boolean reserve(String id) {
+        var now = LocalDateTime.now();
+        var expiresAt = now.plus(idempotencyConfig.getWindow());
+        var reservedUntil = now.plus(idempotencyConfig.getReservationLease());
+        if (idempotencyRecordRepository.reserve(id, expiresAt, reservedUntil) == 1) {
+            return true;
+        }
+
+        //the key is taken: a request that died while holding it loses it after the lease,
+        //a completed response is kept until its window is over
+        var existing = idempotencyRecordRepository.findById(id).orElse(null);
+        if (existing != null && !existing.isExpired()) {
+            return !existing.isCompleted() && idempotencyRecordRepository.takeOver(id, reservedUntil, now) == 1;
+        }
+        release(id);
+        return idempotencyRecordRepository.reserve(id, expiresAt, reservedUntil) == 1;
+    }
+
+    public void complete(String id, int statusCode, String contentType, byte[] body) {
+        idempotencyRecordRepository.complete(id, statusCode, contentType, body);
+        completed.invalidate(id);
+    }
+
+    public void release(String id) {
+        idempotencyRecordRepository.deleteById(id);
+        completed.invalidate(id);
+    }
+
+    @Scheduled(fixedDelayString = "PT1H")
+    public void deleteExpired() {
+        idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,7 @@
+package com.codewithmosh.store.common;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException() {
+        super("Invalid cursor.");
+    }
+}
@@ -0,0 +1,7 @@
+package com.codewithmosh.store.common;
+
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
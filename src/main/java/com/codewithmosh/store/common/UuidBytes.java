@@ -0,0 +1,23 @@
+package com.codewithmosh.store.common;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+//binary(16) form of a UUID, the same byte order Hibernate uses for UUID ids, for native queries
+public final class UuidBytes {
+
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        var buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,38 @@
+package com.codewithmosh.store.common;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+//RFC 9562 version 7: 48 bit unix millis, 12 bit counter (rand_a) for ordering within a millisecond, 62 random bits
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    //unix millis << 12 | counter of the last id handed out
+    private static final AtomicLong lastTimestamp = new AtomicLong();
+
+    public static UUID next() {
+        var timestamp = lastTimestamp.updateAndGet(last -> Math.max(System.currentTimeMillis() << 12, last + 1));
+
+        var mostSigBits = (timestamp >>> 12) << 16 | 0x7000L | (timestamp & 0xFFFL);
+        var leastSigBits = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
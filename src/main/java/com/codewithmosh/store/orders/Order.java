@@ -16,12 +16,18 @@ import java.util.Set;
 @Entity
 @Table(name = "orders")
 public class Order {
+    //ids come in blocks of 50 from id_generators, unlike IDENTITY this lets Hibernate batch the inserts.
+    //a new block is read in its own transaction on a second pooled connection while the checkout holds its first,
+    //so the pool needs spare connections (see application-virtual.yaml). allocationSize must not be changed in
+    //place, the pooled optimizer would hand out ids of blocks that were already used
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_id")
+    @TableGenerator(name = "order_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     private User customer;
 
@@ -43,17 +49,20 @@ public class Order {
         Order order = new Order();
         order.setCustomer(customer);
         order.setStatus(PaymentStatus.PENDING);
-        order.setTotalPrice(cart.getTotalPrice());
 
-        //iterate the cartItem to orderItem
-        cart.getItems().forEach(item -> {
+        //iterate the cartItem to orderItem, the total is what the order items are charged at
+        var totalPrice = BigDecimal.ZERO;
+        for (var item : cart.getItems()) {
             var orderItem = new OrderItem(order, item.getProduct(), item.getQuantity());
             order.items.add(orderItem);
-        });
+            totalPrice = totalPrice.add(orderItem.getTotalPrice());
+        }
+        order.setTotalPrice(totalPrice);
         return order;
     }
 
-    public boolean isPlacedBy(User customer) {
-        return this.customer.equals(customer);
+    public boolean isPlacedBy(Long customerId) {
+        //reads the id from the proxy, the customer is not loaded
+        return customer.getId().equals(customerId);
     }
 }
\ No newline at end of file
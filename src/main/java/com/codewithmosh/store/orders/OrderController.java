@@ -1,12 +1,17 @@
 package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.common.ErrorDto;
+import com.codewithmosh.store.common.InvalidCursorException;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDate;
 import java.util.List;
 
 @AllArgsConstructor
@@ -21,6 +26,28 @@ public class OrderController {
        return orderService.getAllOrders();
     }
 
+    //GET /orders?view=summary, for order lists that do not show the items
+    @GetMapping(params = "view=summary")
+    public List<OrderSummaryDto> getOrderSummaries(){
+        return orderService.getOrderSummaries();
+    }
+
+    @GetMapping("/page")
+    public OrderPageDto getOrderPage(
+            @RequestParam(required = false, name = "cursor") String cursor,
+            @RequestParam(required = false, name = "size") Integer size,
+            @RequestParam(required = false, name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false, name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false, name = "status") PaymentStatus status) {
+        return orderService.getOrderPage(cursor, size, from, to, status);
+    }
+
+    //pushes status transitions of the current user's orders instead of having the client poll
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatusChanges(){
+        return orderService.subscribeToStatusChanges();
+    }
+
     @GetMapping("/{orderId}")
     public OrderDto getOrder(@PathVariable("orderId") Long orderId){
         return orderService.getOrder(orderId);
@@ -33,6 +60,11 @@ public class OrderController {
                 .body(new ErrorDto(ex.getMessage()));
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorDto> handleInvalidCursor(Exception ex){
+        return ResponseEntity.badRequest().body(new ErrorDto(ex.getMessage()));
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<ErrorDto> handleAccessDenied(Exception ex){
         return ResponseEntity
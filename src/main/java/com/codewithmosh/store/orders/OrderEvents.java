@@ -0,0 +1,42 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.outbox.Outbox;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//order lifecycle events, written to the outbox in the transaction that changes the order
+@Component
+@AllArgsConstructor
+public class OrderEvents {
+
+    public static final String AGGREGATE_TYPE = "Order";
+    public static final String ORDER_CREATED = "OrderCreated";
+    public static final String ORDER_STATUS_CHANGED = "OrderStatusChanged";
+    public static final String ORDER_CANCELLED = "OrderCancelled";
+
+    private final Outbox outbox;
+
+    public void created(Order order, Long customerId) {
+        var payload = new LinkedHashMap<String, Object>();
+        payload.put("orderId", order.getId());
+        payload.put("customerId", customerId);
+        payload.put("status", order.getStatus().name());
+        payload.put("totalPrice", order.getTotalPrice());
+        outbox.append(outbox.event(AGGREGATE_TYPE, order.getId(), ORDER_CREATED, payload));
+    }
+
+    public void statusChanged(List<OrderStatusChange> changes) {
+        outbox.append(changes.stream()
+                .map(change -> outbox.event(AGGREGATE_TYPE, change.getOrderId(), ORDER_STATUS_CHANGED, change))
+                .toList());
+    }
+
+    public void cancelled(Long orderId) {
+        var payload = new LinkedHashMap<String, Object>();
+        payload.put("orderId", orderId);
+        outbox.append(outbox.event(AGGREGATE_TYPE, orderId, ORDER_CANCELLED, payload));
+    }
+}
@@ -0,0 +1,21 @@
+package com.codewithmosh.store.orders;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.events")
+public class OrderEventsConfig {
+    private int maxSubscribers = 1000;
+    private int maxSubscribersPerCustomer = 5;
+    private int bufferSize = 32; //events waiting for one connection, a client that falls further behind is dropped
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+    private Duration timeout = Duration.ofMinutes(30); //EventSource clients reconnect on their own afterwards
+    private int senderThreads = 4;
+    private Duration pollInterval = Duration.ofMillis(500); //added on top of the outbox relay's poll interval
+    private int batchSize = 100;
+}
@@ -0,0 +1,13 @@
+package com.codewithmosh.store.orders;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.history")
+public class OrderHistoryConfig {
+    private int defaultPageSize = 20;
+    private int maxPageSize = 100;
+}
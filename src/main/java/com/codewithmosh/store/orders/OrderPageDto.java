@@ -0,0 +1,13 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class OrderPageDto {
+    private List<OrderDto> items;
+    private String next; //null when this is the last page
+}
@@ -1,18 +1,50 @@
 package com.codewithmosh.store.orders;
 
-import com.codewithmosh.store.users.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     @EntityGraph(attributePaths = "items.product") //eager loading for items and product
-    @Query("SELECT o FROM Order o WHERE o.customer = :customer")
-    List<Order> getOrdersByCustomer(@Param("customer") User customer);
+    @Query("SELECT o FROM Order o WHERE o.customer.id = :customerId")
+    List<Order> getOrdersByCustomer(@Param("customerId") Long customerId);
+
+    //one aggregate over orders and order_items, the item count is the number of units ordered
+    @Query("select new com.codewithmosh.store.orders.OrderSummaryDto(" +
+            "o.id, o.status, o.createdAt, o.totalPrice, coalesce(sum(i.quantity), 0L)) " +
+            "from Order o left join o.items i where o.customer.id = :customerId " +
+            "group by o.id, o.status, o.createdAt, o.totalPrice " +
+            "order by o.createdAt desc, o.id desc")
+    List<OrderSummaryDto> getOrderSummaries(@Param("customerId") Long customerId);
+
+    //keyset page on (created_at, id), newest first, only ids: answered from (customer_id, created_at, id),
+    //or from (customer_id, status, created_at, id) when a status is given
+    @Query("select o.id from Order o where o.customer.id = :customerId " +
+            "and (:status is null or o.status = :status) " +
+            "and (:from is null or o.createdAt >= :from) " +
+            "and (:to is null or o.createdAt < :to) " +
+            "and (:afterCreatedAt is null or o.createdAt < :afterCreatedAt " +
+            "or (o.createdAt = :afterCreatedAt and o.id < :afterId)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<Long> findPageIds(
+            @Param("customerId") Long customerId,
+            @Param("status") PaymentStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    //items of one page in a single query
+    @EntityGraph(attributePaths = "items.product")
+    @Query("select o from Order o where o.id in :orderIds order by o.createdAt desc, o.id desc")
+    List<Order> getOrdersWithItems(@Param("orderIds") List<Long> orderIds);
 
     @EntityGraph(attributePaths = "items.product")
     @Query("SELECT o FROM Order o WHERE o.id = :orderId")
@@ -1,10 +1,19 @@
 package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.auth.AuthService;
+import com.codewithmosh.store.common.InvalidCursorException;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 
 @AllArgsConstructor
@@ -14,28 +23,95 @@ public class OrderService {
     private final AuthService authService;
     private final OrderRepository orderRepository;
     private final OrderMapper orderMapper;
+    private final OrderHistoryConfig orderHistoryConfig;
+    private final OrderStatusBroadcaster orderStatusBroadcaster;
 
     public List<OrderDto> getAllOrders(){
-        //get authenticated user
-        var user = authService.getCurrentUser();
-
-        //get the orders that created by this user
-        var orders = orderRepository.getOrdersByCustomer(user);
+        //get the orders that created by the authenticated user
+        var orders = orderRepository.getOrdersByCustomer(authService.getCurrentUserId());
 
         return orders.stream().map(orderMapper::toDto).toList();
     }
 
+    public List<OrderSummaryDto> getOrderSummaries(){
+        return orderRepository.getOrderSummaries(authService.getCurrentUserId());
+    }
+
+    public OrderPageDto getOrderPage(
+            String cursor, Integer size, LocalDate from, LocalDate to, PaymentStatus status) {
+        var pageSize = resolvePageSize(size);
+        var after = cursor == null ? null : decodeCursor(cursor);
+
+        //fetch one extra id to find out whether there is a next page
+        var orderIds = orderRepository.findPageIds(
+                authService.getCurrentUserId(),
+                status,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null, //to is inclusive
+                after != null ? after.getCreatedAt() : null,
+                after != null ? after.getId() : null,
+                PageRequest.of(0, pageSize + 1));
+        var hasNext = orderIds.size() > pageSize;
+        if (hasNext) {
+            orderIds = orderIds.subList(0, pageSize);
+        }
+        if (orderIds.isEmpty()) {
+            return new OrderPageDto(List.of(), null);
+        }
+
+        var orders = orderRepository.getOrdersWithItems(orderIds);
+        var items = orders.stream().map(orderMapper::toDto).toList();
+        var next = hasNext ? encodeCursor(orders.get(orders.size() - 1)) : null;
+        return new OrderPageDto(items, next);
+    }
+
+    public SseEmitter subscribeToStatusChanges() {
+        return orderStatusBroadcaster.subscribe(authService.getCurrentUserId());
+    }
+
     public OrderDto getOrder(Long orderId) {
         //check if the order exist
         var order = orderRepository.getOrderWithItems(orderId).orElseThrow(OrderNotFoundException::new);
 
         //check if the order belongs to this user
-        var user = authService.getCurrentUser();
-        if(!order.isPlacedBy(user)) {
+        if(!order.isPlacedBy(authService.getCurrentUserId())) {
             throw new AccessDeniedException("You do not have permission to access this order");
         }
 
         //return order and 200
         return orderMapper.toDto(order);
     }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size < 1) {
+            return orderHistoryConfig.getDefaultPageSize();
+        }
+        return Math.min(size, orderHistoryConfig.getMaxPageSize());
+    }
+
+    private String encodeCursor(Order order) {
+        var value = order.getCreatedAt() + "," + order.getId();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String cursor) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var parts = value.split(",", 2);
+            if (parts.length != 2) {
+                throw new InvalidCursorException();
+            }
+            return new Cursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) { //also covers NumberFormatException
+            throw new InvalidCursorException();
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class Cursor {
+        private LocalDateTime createdAt;
+        private Long id;
+    }
 }
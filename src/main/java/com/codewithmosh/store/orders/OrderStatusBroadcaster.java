@@ -0,0 +1,217 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.common.TooManyRequestsException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//pushes OrderStatusChanged outbox events to the SSE connections of the order's customer
+@Component
+public class OrderStatusBroadcaster {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OrderEventsConfig orderEventsConfig;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    //connections are written by these threads, never by the scheduler thread that polls the events
+    private final ExecutorService sender;
+    private final Counter dropped;
+    //last outbox event looked at, -1 while nobody is subscribed
+    private long lastEventId = -1;
+
+    public OrderStatusBroadcaster(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            OrderEventsConfig orderEventsConfig,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.orderEventsConfig = orderEventsConfig;
+        this.sender = Executors.newFixedThreadPool(orderEventsConfig.getSenderThreads());
+        this.dropped = meterRegistry.counter("orders.events.dropped");
+        meterRegistry.gauge("orders.events.subscribers", subscriberCount);
+    }
+
+    public SseEmitter subscribe(Long customerId) {
+        if (subscriberCount.incrementAndGet() > orderEventsConfig.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new TooManyRequestsException("Too many open order event streams.");
+        }
+
+        var subscriber = new Subscriber(
+                customerId,
+                new SseEmitter(orderEventsConfig.getTimeout().toMillis()),
+                new ArrayBlockingQueue<>(orderEventsConfig.getBufferSize()));
+        try {
+            subscribers.compute(customerId, (id, customerSubscribers) -> {
+                if (customerSubscribers == null) {
+                    customerSubscribers = ConcurrentHashMap.newKeySet();
+                }
+                if (customerSubscribers.size() >= orderEventsConfig.getMaxSubscribersPerCustomer()) {
+                    throw new TooManyRequestsException("Too many open order event streams for this user.");
+                }
+                customerSubscribers.add(subscriber);
+                return customerSubscribers;
+            });
+        } catch (TooManyRequestsException ex) {
+            subscriberCount.decrementAndGet();
+            throw ex;
+        }
+
+        var emitter = subscriber.getEmitter();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(ex -> remove(subscriber));
+        return emitter;
+    }
+
+    //every instance tails outbox_events for its own subscribers, whichever instance runs the relay.
+    //only relayed rows are read: the relay publishes in id order, so there is no gap to skip over
+    @Scheduled(fixedDelayString = "#{@orderEventsConfig.pollInterval}")
+    public void pollEvents() {
+        if (subscribers.isEmpty()) {
+            lastEventId = -1;
+            return;
+        }
+        if (lastEventId < 0) {
+            //a new subscriber reads the order itself, earlier changes are already part of it. the tail starts
+            //before the oldest row the relay has not published yet, otherwise it would skip that row once published
+            lastEventId = jdbcTemplate.queryForObject(
+                    "select coalesce((select min(id) - 1 from outbox_events where published_at is null), " +
+                            "(select max(id) from outbox_events), 0)",
+                    Long.class);
+            return;
+        }
+
+        int count;
+        do {
+            var events = jdbcTemplate.query(
+                    "select id, payload from outbox_events " +
+                            "where id > ? and published_at is not null and event_type = ? order by id limit ?",
+                    (rs, rowNum) -> new StatusEvent(rs.getLong("id"), rs.getString("payload")),
+                    lastEventId, OrderEvents.ORDER_STATUS_CHANGED, orderEventsConfig.getBatchSize());
+            events.forEach(this::dispatch);
+            count = events.size();
+            if (count > 0) {
+                lastEventId = events.get(count - 1).getId();
+            }
+        } while (count == orderEventsConfig.getBatchSize());
+    }
+
+    //never throws for a single bad event
+    private void dispatch(StatusEvent event) {
+        OrderStatusChange change;
+        try {
+            change = objectMapper.readValue(event.getPayload(), OrderStatusChange.class);
+        } catch (JsonProcessingException e) {
+            return;
+        }
+
+        var customerSubscribers = change.getCustomerId() != null ? subscribers.get(change.getCustomerId()) : null;
+        if (customerSubscribers == null) {
+            return;
+        }
+
+        customerSubscribers.forEach(subscriber -> enqueue(subscriber, SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name("order-status")
+                .data(change)));
+    }
+
+    //keeps proxies from closing idle connections and detects clients that went away
+    @Scheduled(fixedDelayString = "#{@orderEventsConfig.heartbeatInterval}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(customerSubscribers -> customerSubscribers.forEach(
+                subscriber -> enqueue(subscriber, SseEmitter.event().comment("heartbeat"))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        subscribers.values().forEach(customerSubscribers -> customerSubscribers.forEach(
+                subscriber -> subscriber.getEmitter().complete()));
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.getQueue().offer(event)) {
+            //the client does not keep up, its buffer is full: close the stream instead of growing memory
+            dropped.increment();
+            remove(subscriber);
+            subscriber.getEmitter().complete();
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.getDraining().compareAndSet(false, true)) {
+            sender.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.getQueue().poll()) != null) {
+                subscriber.getEmitter().send(event);
+            }
+        } catch (IOException | IllegalStateException ex) {
+            //the connection is gone or already completed
+            remove(subscriber);
+            subscriber.getQueue().clear();
+            return;
+        } finally {
+            subscriber.getDraining().set(false);
+        }
+
+        //an event queued after the loop ended but before the flag was reset
+        if (!subscriber.getQueue().isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.getCustomerId(), (id, customerSubscribers) -> {
+            if (customerSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return customerSubscribers.isEmpty() ? null : customerSubscribers;
+        });
+    }
+
+    @RequiredArgsConstructor
+    @Getter
+    private static class StatusEvent {
+        private final long id;
+        private final String payload;
+    }
+
+    @RequiredArgsConstructor
+    @Getter
+    private static class Subscriber {
+        private final Long customerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+}
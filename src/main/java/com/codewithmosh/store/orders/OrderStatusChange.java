@@ -0,0 +1,15 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//payload of OrderStatusChanged events
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusChange {
+    private Long orderId;
+    private Long customerId; //lets every instance route the event to its subscribers without a lookup
+    private String status;
+}
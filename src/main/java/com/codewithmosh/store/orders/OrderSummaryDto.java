@@ -0,0 +1,24 @@
+package com.codewithmosh.store.orders;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//one row of the order list, built by a JPQL constructor expression without loading items or products
+@Data
+public class OrderSummaryDto {
+    private Long id;
+    private String status;
+    private LocalDateTime createdAt;
+    private BigDecimal totalPrice;
+    private long itemCount;
+
+    public OrderSummaryDto(Long id, PaymentStatus status, LocalDateTime createdAt, BigDecimal totalPrice, Long itemCount) {
+        this.id = id;
+        this.status = status.name();
+        this.createdAt = createdAt;
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
+    }
+}
@@ -0,0 +1,47 @@
+package com.codewithmosh.store.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//appends events in the caller's transaction, so an event is stored exactly when the change it describes commits
+@Component
+@AllArgsConstructor
+public class Outbox {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OutboxEvent event(String aggregateType, Object aggregateId, String eventType, Object payload) {
+        try {
+            return new OutboxEvent(null, aggregateType, aggregateId.toString(), eventType,
+                    objectMapper.writeValueAsString(payload), null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload cannot be serialized.", e);
+        }
+    }
+
+    public void append(OutboxEvent event) {
+        append(List.of(event));
+    }
+
+    public void append(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                "insert into outbox_events (aggregate_type, aggregate_id, event_type, payload) values (?, ?, ?, ?)",
+                events, events.size(),
+                (statement, event) -> {
+                    statement.setString(1, event.getAggregateType());
+                    statement.setString(2, event.getAggregateId());
+                    statement.setString(3, event.getEventType());
+                    statement.setString(4, event.getPayload());
+                });
+    }
+}
@@ -0,0 +1,23 @@
+package com.codewithmosh.store.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxConfig {
+    private int batchSize = 100;
+    private Duration pollInterval = Duration.ofSeconds(1); //also the first step of the backoff
+    private Duration maxBackoff = Duration.ofMinutes(1); //longest pause after a sink kept failing
+    private Duration retention = Duration.ofDays(7);
+    private FileProperties file = new FileProperties();
+
+    @Data
+    public static class FileProperties {
+        private String path; //the NDJSON sink is only created when this is set
+    }
+}
@@ -0,0 +1,20 @@
+package com.codewithmosh.store.outbox;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+//one row of outbox_events, id and createdAt are null until the row is stored
+@AllArgsConstructor
+@Getter
+public class OutboxEvent {
+    private Long id;
+    private String aggregateType;
+    private String aggregateId;
+    private String eventType;
+    @JsonRawValue
+    private String payload; //JSON
+    private Instant createdAt;
+}
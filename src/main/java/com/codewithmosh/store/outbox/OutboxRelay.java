@@ -0,0 +1,114 @@
+package com.codewithmosh.store.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+//drains outbox_events in id order to every OutboxSink, delivery is at least once
+@Component
+public class OutboxRelay {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxConfig outboxConfig;
+    private final List<OutboxSink> sinks;
+    private final Timer lag;
+    private final Counter relayed;
+    private final Counter failures;
+    private final AtomicLong pending = new AtomicLong();
+
+    private int consecutiveFailures;
+    private Instant pausedUntil = Instant.MIN;
+
+    public OutboxRelay(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OutboxConfig outboxConfig,
+            List<OutboxSink> sinks,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxConfig = outboxConfig;
+        this.sinks = sinks;
+        this.lag = meterRegistry.timer("outbox.lag");
+        this.relayed = meterRegistry.counter("outbox.relayed");
+        this.failures = meterRegistry.counter("outbox.failures");
+        meterRegistry.gauge("outbox.pending", pending);
+    }
+
+    @Scheduled(fixedDelayString = "#{@outboxConfig.pollInterval}")
+    public void relay() {
+        //backpressure: after a failing sink the relay waits, events keep piling up in the table meanwhile
+        if (Instant.now().isBefore(pausedUntil)) {
+            return;
+        }
+
+        try {
+            int count;
+            do {
+                count = transactionTemplate.execute(status -> relayBatch());
+            } while (count == outboxConfig.getBatchSize());
+            consecutiveFailures = 0;
+        } catch (RuntimeException ex) {
+            failures.increment();
+            consecutiveFailures++;
+            pausedUntil = Instant.now().plus(backoff());
+            throw ex;
+        } finally {
+            pending.set(jdbcTemplate.queryForObject(
+                    "select count(*) from outbox_events where published_at is null", Long.class));
+        }
+    }
+
+    private int relayBatch() {
+        //FOR UPDATE (without SKIP LOCKED) lets only one instance relay at a time, which keeps the order
+        var events = jdbcTemplate.query(
+                "select id, aggregate_type, aggregate_id, event_type, payload, created_at from outbox_events " +
+                        "where published_at is null order by id limit ? for update",
+                (rs, rowNum) -> new OutboxEvent(
+                        rs.getLong("id"),
+                        rs.getString("aggregate_type"),
+                        rs.getString("aggregate_id"),
+                        rs.getString("event_type"),
+                        rs.getString("payload"),
+                        rs.getTimestamp("created_at").toInstant()),
+                outboxConfig.getBatchSize());
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        //a sink that throws rolls the batch back, sinks that already got it see it again on the retry
+        sinks.forEach(sink -> sink.publish(events));
+
+        jdbcTemplate.batchUpdate(
+                "update outbox_events set published_at = current_timestamp(3) where id = ?",
+                events, events.size(),
+                (statement, event) -> statement.setLong(1, event.getId()));
+
+        var now = Instant.now();
+        events.forEach(event -> lag.record(Duration.between(event.getCreatedAt(), now)));
+        relayed.increment(events.size());
+        return events.size();
+    }
+
+    private Duration backoff() {
+        var backoff = outboxConfig.getPollInterval().multipliedBy(1L << Math.min(consecutiveFailures, 16));
+        return backoff.compareTo(outboxConfig.getMaxBackoff()) > 0 ? outboxConfig.getMaxBackoff() : backoff;
+    }
+
+    @Scheduled(fixedDelayString = "PT1H")
+    public void deletePublished() {
+        var publishedBefore = Timestamp.from(Instant.now().minus(outboxConfig.getRetention()));
+        jdbcTemplate.update("delete from outbox_events where published_at < ?", publishedBefore);
+    }
+}
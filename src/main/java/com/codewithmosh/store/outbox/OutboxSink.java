@@ -0,0 +1,8 @@
+package com.codewithmosh.store.outbox;
+
+import java.util.List;
+
+//destination of relayed events, a sink that throws pauses the relay and gets the same batch again later
+public interface OutboxSink {
+    void publish(List<OutboxEvent> events);
+}
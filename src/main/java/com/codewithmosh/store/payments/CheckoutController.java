@@ -19,6 +19,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.*;
 
@@ -53,6 +54,13 @@ public class CheckoutController {
                 .status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new ErrorDto("Error creating a checkout session."));
     }
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<ErrorDto> handleAccessDenied(Exception ex) {
+        return ResponseEntity
+                .status(HttpStatus.FORBIDDEN)
+                .body(new ErrorDto(ex.getMessage()));
+    }
+
     @ExceptionHandler({CartNotFoundException.class, CartEmptyException.class})
     public ResponseEntity<ErrorDto> handelException(Exception ex) {
         return ResponseEntity.badRequest().body(
@@ -108,10 +116,10 @@ public class CheckoutController {
                 return switch (event.getType()) {
                     case "payment_intent.succeeded" ->
                         //update order status(PAID)
-                        Optional.of(new PaymentResult(extractOrderId(event), PaymentStatus.PAID));
+                        Optional.of(new PaymentResult(event.getId(), extractOrderId(event), PaymentStatus.PAID));
                     case "payment_intent.payment_failed" ->
                         //update order status(FAILED)
-                        Optional.of(new PaymentResult(extractOrderId(event),PaymentStatus.FAILED));
+                        Optional.of(new PaymentResult(event.getId(), extractOrderId(event), PaymentStatus.FAILED));
                     default -> Optional.empty();
                 };
             } catch (SignatureVerificationException e) {
@@ -2,14 +2,22 @@ package com.codewithmosh.store.payments;
 
 import com.codewithmosh.store.auth.AuthService;
 import com.codewithmosh.store.orders.Order;
+import com.codewithmosh.store.orders.OrderEvents;
+import com.codewithmosh.store.orders.OrderItem;
 import com.codewithmosh.store.carts.CartEmptyException;
 import com.codewithmosh.store.carts.CartNotFoundException;
 import com.codewithmosh.store.carts.CartRepository;
 import com.codewithmosh.store.orders.OrderRepository;
 import com.codewithmosh.store.carts.CartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
@@ -20,11 +28,47 @@ public class CheckoutService {
     private final OrderRepository orderRepository;
     private final CartService cartService;
     private final CheckoutController.PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final WebhookInbox webhookInbox;
+    private final OrderEvents orderEvents;
 
-    @Transactional
+    //no transaction (and no pooled connection) is held while the payment gateway is called
     public CheckoutResponse checkout(CheckoutRequest checkoutRequest){
+        var cartId = checkoutRequest.getCartId();
+        cartService.checkAccess(cartId, authService.getCurrentUserId());
+
+        //the order is built from MySQL, so a write-behind cart is written out first
+        cartService.flush(cartId);
+
+        //1. short transaction: persist the order as PENDING
+        var order = timed("reserve", () -> transactionTemplate.execute(status -> createPendingOrder(cartId)));
+
+        //2. remote call to the payment gateway
+        CheckoutSession session;
+        try{
+            session = timed("gateway", () -> paymentGateway.createCheckoutSession(order));
+        }catch (PaymentException ex){
+            //3a. short transaction: compensate by removing the pending order
+            timed("compensate", () -> transactionTemplate.executeWithoutResult(status -> {
+                orderRepository.deleteById(order.getId());
+                orderEvents.cancelled(order.getId());
+            }));
+            throw ex;
+        }
+
+        //3b. finalize by taking the ordered lines out of the cart, CartService runs it in its own (retried)
+        //transaction; items added while the gateway was called stay in the cart
+        var ordered = order.getItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItem::getQuantity));
+        timed("finalize", () -> cartService.removeQuantities(cartId, ordered));
+
+        return new CheckoutResponse(order.getId(), session.getCheckoutUrl());
+    }
+
+    private Order createPendingOrder(UUID cartId) {
         //check if the cart exist
-        var cart = cartRepository.getCartWithItems(checkoutRequest.getCartId()).orElse(null);
+        var cart = cartRepository.getCartWithItems(cartId).orElse(null);
         if(cart == null) {
             throw new CartNotFoundException();
         }
@@ -35,28 +79,32 @@ public class CheckoutService {
         }
 
         //create order and orderItem object inside the Order class
-        var order = Order.fromCart(cart, authService.getCurrentUser());
+        var order = Order.fromCart(cart, authService.getCurrentUserReference());
         orderRepository.save(order);
+        orderEvents.created(order, authService.getCurrentUserId());
+        return order;
+    }
 
-        try{
-            var session = paymentGateway.createCheckoutSession(order);
-            cartService.clearCart(cart.getId());
-
-            return new CheckoutResponse(order.getId(), session.getCheckoutUrl()) ;
-
-        }catch (PaymentException ex){
-            orderRepository.delete(order);
-            throw ex;
+    private <T> T timed(String phase, Supplier<T> action) {
+        var sample = Timer.start(meterRegistry);
+        try {
+            return action.get();
+        } finally {
+            sample.stop(meterRegistry.timer("checkout.phase", "phase", phase));
         }
     }
 
+    private void timed(String phase, Runnable action) {
+        timed(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
     public void handleWebhookEvent(WebhookRequest request) {
+        //the signature is verified here, the order status is updated later by the inbox worker
         paymentGateway
                 .parseWebhookRequest(request)
-                .ifPresent(paymentResult -> {
-                    var order = orderRepository.findById(paymentResult.getOrderId()).orElseThrow();
-                    order.setStatus(paymentResult.getPaymentStatus());
-                    orderRepository.save(order);
-        });
+                .ifPresent(webhookInbox::enqueue);
     }
 }
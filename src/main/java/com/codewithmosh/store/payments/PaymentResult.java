@@ -7,6 +7,7 @@ import lombok.Getter;
 @AllArgsConstructor
 @Getter
 public class PaymentResult {
+    private String eventId;
     private Long orderId;
     private PaymentStatus paymentStatus;
 }
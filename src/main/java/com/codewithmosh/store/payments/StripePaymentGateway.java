@@ -59,10 +59,10 @@ public class StripePaymentGateway implements PaymentGateway {
             return switch (event.getType()) {
                 case "payment_intent.succeeded" ->
                     //update order status(PAID)
-                    Optional.of(new PaymentResult(extractOrderId(event),PaymentStatus.PAID));
+                    Optional.of(new PaymentResult(event.getId(), extractOrderId(event), PaymentStatus.PAID));
                 case "payment_intent.payment_failed" ->
                     //update order status(FAILED)
-                    Optional.of(new PaymentResult(extractOrderId(event),PaymentStatus.FAILED));
+                    Optional.of(new PaymentResult(event.getId(), extractOrderId(event), PaymentStatus.FAILED));
                 default -> Optional.empty();
             };
         } catch (SignatureVerificationException e) {
@@ -0,0 +1,128 @@
+package com.codewithmosh.store.payments;
+
+import com.codewithmosh.store.orders.OrderEvents;
+import com.codewithmosh.store.orders.OrderStatusChange;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+//durable inbox of verified payment events, the webhook is acknowledged as soon as the event is stored
+@Component
+public class WebhookInbox {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WebhookInboxConfig webhookInboxConfig;
+    private final OrderEvents orderEvents;
+    private final Timer lag;
+    private final AtomicLong depth = new AtomicLong();
+
+    public WebhookInbox(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            WebhookInboxConfig webhookInboxConfig,
+            OrderEvents orderEvents,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.webhookInboxConfig = webhookInboxConfig;
+        this.orderEvents = orderEvents;
+        this.lag = meterRegistry.timer("payments.webhook.inbox.lag");
+        meterRegistry.gauge("payments.webhook.inbox.depth", depth);
+    }
+
+    public void enqueue(PaymentResult paymentResult) {
+        //Stripe may deliver the same event more than once, the primary key deduplicates it
+        jdbcTemplate.update(
+                "insert ignore into webhook_events (event_id, order_id, status) values (?, ?, ?)",
+                paymentResult.getEventId(),
+                paymentResult.getOrderId(),
+                paymentResult.getPaymentStatus().name());
+    }
+
+    @Scheduled(fixedDelayString = "#{@webhookInboxConfig.pollInterval}")
+    public void drain() {
+        int drained;
+        do {
+            drained = transactionTemplate.execute(status -> drainBatch());
+        } while (drained == webhookInboxConfig.getBatchSize());
+
+        depth.set(jdbcTemplate.queryForObject(
+                "select count(*) from webhook_events where processed_at is null", Long.class));
+    }
+
+    private int drainBatch() {
+        //skip locked rows so several instances can drain the inbox at the same time
+        var events = jdbcTemplate.query(
+                "select e.event_id, e.order_id, o.customer_id, e.status, e.received_at from webhook_events e " +
+                        "left join orders o on o.id = e.order_id " +
+                        "where e.processed_at is null order by e.received_at limit ? for update of e skip locked",
+                (rs, rowNum) -> new InboxEvent(
+                        rs.getString("event_id"),
+                        rs.getLong("order_id"),
+                        rs.getObject("customer_id", Long.class),
+                        rs.getString("status"),
+                        rs.getTimestamp("received_at").toInstant()),
+                webhookInboxConfig.getBatchSize());
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        //a paid order stays paid even if an older failure event arrives late. Connector/J counts matched
+        //rows, so a repeated event is kept out by status <> ? instead of relying on the changed row count
+        var updateCounts = jdbcTemplate.batchUpdate(
+                "update orders set status = ? where id = ? and status <> 'PAID' and status <> ?",
+                events, events.size(),
+                (statement, event) -> {
+                    statement.setString(1, event.getStatus());
+                    statement.setLong(2, event.getOrderId());
+                    statement.setString(3, event.getStatus());
+                });
+        //only orders whose status really changed get an OrderStatusChanged event, in the same transaction
+        var changes = new ArrayList<OrderStatusChange>();
+        for (int i = 0; i < events.size(); i++) {
+            if (updateCounts[0][i] != 0) {
+                var event = events.get(i);
+                changes.add(new OrderStatusChange(event.getOrderId(), event.getCustomerId(), event.getStatus()));
+            }
+        }
+        orderEvents.statusChanged(changes);
+
+        jdbcTemplate.batchUpdate(
+                "update webhook_events set processed_at = current_timestamp(3) where event_id = ?",
+                events, events.size(),
+                (statement, event) -> statement.setString(1, event.getEventId()));
+
+        var now = Instant.now();
+        events.forEach(event -> lag.record(Duration.between(event.getReceivedAt(), now)));
+        return events.size();
+    }
+
+    @Scheduled(fixedDelayString = "PT1H")
+    public void deleteProcessed() {
+        var processedBefore = Timestamp.from(Instant.now().minus(webhookInboxConfig.getRetention()));
+        jdbcTemplate.update("delete from webhook_events where processed_at < ?", processedBefore);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class InboxEvent {
+        private String eventId;
+        private Long orderId;
+        private Long customerId;
+        private String status;
+        private Instant receivedAt;
+    }
+}
@@ -0,0 +1,16 @@
+package com.codewithmosh.store.payments;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "payments.webhook-inbox")
+public class WebhookInboxConfig {
+    private int batchSize = 200;
+    private Duration pollInterval = Duration.ofSeconds(1);
+    private Duration retention = Duration.ofDays(7); //Stripe keeps retrying an event for up to 3 days
+}
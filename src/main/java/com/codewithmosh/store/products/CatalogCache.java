@@ -0,0 +1,83 @@
+package com.codewithmosh.store.products;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+//read-through cache of products and categories, hit/miss/eviction counters are published as cache.* metrics
+@Component
+public class CatalogCache {
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final Cache<Long, Product> products;
+    private final Cache<Byte, Category> categories;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CatalogCache(
+            ProductRepository productRepository,
+            CategoryRepository categoryRepository,
+            CatalogConfig catalogConfig,
+            MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+
+        var cacheConfig = catalogConfig.getCache();
+        this.products = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .expireAfterWrite(cacheConfig.getTimeToLive())
+                .recordStats()
+                .build();
+        this.categories = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .expireAfterWrite(cacheConfig.getTimeToLive())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, categories, "categories");
+    }
+
+    //loads run outside of the cache's internal locks so a virtual thread never blocks on JDBC while pinned
+    public Optional<Product> findProduct(Long id) {
+        return Optional.ofNullable(find(products, id, key -> productRepository.findById(key).orElse(null)));
+    }
+
+    public Optional<Category> findCategory(Byte id) {
+        return Optional.ofNullable(find(categories, id, key -> categoryRepository.findById(key).orElse(null)));
+    }
+
+    private <K, V> V find(Cache<K, V> cache, K key, Function<K, V> loader) {
+        var value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        //a missing id is not stored, and a value loaded while an eviction happened does not stay cached
+        var generation = invalidations.get();
+        value = loader.apply(key);
+        if (value != null) {
+            cache.put(key, value);
+            if (invalidations.get() != generation) {
+                cache.invalidate(key);
+            }
+        }
+        return value;
+    }
+
+    public void evictProduct(Long id) {
+        invalidations.incrementAndGet();
+        products.invalidate(id);
+    }
+
+    public void evictCategory(Byte id) {
+        invalidations.incrementAndGet();
+        categories.invalidate(id);
+    }
+}
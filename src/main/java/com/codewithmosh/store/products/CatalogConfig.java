@@ -0,0 +1,22 @@
+package com.codewithmosh.store.products;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "catalog")
+public class CatalogConfig {
+    private int defaultPageSize = 50;
+    private int maxPageSize = 500;
+    private CacheProperties cache = new CacheProperties();
+
+    @Data
+    public static class CacheProperties {
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+}
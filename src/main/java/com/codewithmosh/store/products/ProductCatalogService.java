@@ -0,0 +1,95 @@
+package com.codewithmosh.store.products;
+
+import com.codewithmosh.store.common.InvalidCursorException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.Base64;
+
+@AllArgsConstructor
+@Service
+public class ProductCatalogService {
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final CatalogConfig catalogConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ProductPageDto getPage(Byte categoryId, String cursor, Integer size) {
+        var pageSize = resolvePageSize(size);
+        var afterId = cursor == null ? 0L : decodeCursor(cursor);
+
+        //fetch one extra row to find out whether there is a next page
+        var products = productRepository.findPageAfter(afterId, categoryId, PageRequest.of(0, pageSize + 1));
+        var hasNext = products.size() > pageSize;
+        if (hasNext) {
+            products = products.subList(0, pageSize);
+        }
+
+        var items = products.stream().map(productMapper::toDto).toList();
+        var next = hasNext ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+        return new ProductPageDto(items, next);
+    }
+
+    public void streamProducts(Byte categoryId, OutputStream out) throws IOException {
+        var sql = "select id, name, description, price, category_id from products"
+                + (categoryId != null ? " where category_id = ?" : "")
+                + " order by id";
+
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            //Integer.MIN_VALUE makes MySQL Connector/J stream rows one by one instead of buffering the result
+            statement.setFetchSize(Integer.MIN_VALUE);
+            if (categoryId != null) {
+                statement.setByte(1, categoryId);
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            var product = new ProductDto();
+            product.setId(rs.getLong("id"));
+            product.setName(rs.getString("name"));
+            product.setDescription(rs.getString("description"));
+            product.setPrice(rs.getBigDecimal("price"));
+            var productCategoryId = rs.getByte("category_id");
+            product.setCategoryId(rs.wasNull() ? null : productCategoryId);
+            try {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size < 1) {
+            return catalogConfig.getDefaultPageSize();
+        }
+        return Math.min(size, catalogConfig.getMaxPageSize());
+    }
+
+    private String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long decodeCursor(String cursor) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.valueOf(value);
+        } catch (IllegalArgumentException e) { //also covers NumberFormatException
+            throw new InvalidCursorException();
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.codewithmosh.store.products;
 
+import com.codewithmosh.store.carts.CartService;
+import com.codewithmosh.store.common.ErrorDto;
+import com.codewithmosh.store.common.InvalidCursorException;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.List;
@@ -14,7 +20,10 @@ public class ProductController {
 
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
-    private final CategoryRepository categoryRepository;
+    private final ProductCatalogService productCatalogService;
+    private final CatalogCache catalogCache;
+    private final ProductService productService;
+    private final CartService cartService;
 
     @GetMapping
     public List<ProductDto> getAllProducts(@RequestParam(required = false, defaultValue = "", name = "categoryId") Byte categoryId) {
@@ -28,9 +37,26 @@ public class ProductController {
         return products.stream().map(productMapper::toDto).toList();
     }
 
+    @GetMapping("/page")
+    public ProductPageDto getProductPage(
+            @RequestParam(required = false, name = "categoryId") Byte categoryId,
+            @RequestParam(required = false, name = "cursor") String cursor,
+            @RequestParam(required = false, name = "size") Integer size) {
+        return productCatalogService.getPage(categoryId, cursor, size);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProducts(
+            @RequestParam(required = false, name = "categoryId") Byte categoryId) {
+        StreamingResponseBody body = out -> productCatalogService.streamProducts(categoryId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getProduct(@PathVariable Long id) {
-        var product = productRepository.findById(id).orElse(null);
+        var product = catalogCache.findProduct(id).orElse(null);
         if(product==null) {
             return ResponseEntity.notFound().build();
         }
@@ -41,13 +67,14 @@ public class ProductController {
     public ResponseEntity<ProductDto> createProduct(
             @RequestBody ProductDto request,
             UriComponentsBuilder uriBuilder) {
-        var category = categoryRepository.findById(request.getCategoryId()).orElseThrow(null);
+        var category = catalogCache.findCategory(request.getCategoryId()).orElse(null);
         if(category==null) {
             return ResponseEntity.badRequest().build();
         }
         var product = productMapper.toEntity(request);
         product.setCategory(category);
         productRepository.save(product);
+        catalogCache.evictProduct(product.getId());
 
         var productDto = productMapper.toDto(product);
         var uri = uriBuilder.path("/products/{id}").buildAndExpand(productDto.getId()).toUri();
@@ -59,19 +86,16 @@ public class ProductController {
     public ResponseEntity<ProductDto> updateProduct(
             @PathVariable(name="id") Long id,
             @RequestBody ProductDto request){
-        var category = categoryRepository.findById(request.getCategoryId()).orElseThrow(null);
+        var category = catalogCache.findCategory(request.getCategoryId()).orElse(null);
         if(category==null) {
             return ResponseEntity.badRequest().build();
         }
 
-        var product = productRepository.findById(id).orElse(null);
-        if(product==null) {
-            return ResponseEntity.notFound().build();
-        }
+        //carts keep a running total, so a price change is pushed into the carts holding the product
+        var product = productService.updateProduct(id, request, category);
+        catalogCache.evictProduct(id);
+        cartService.refreshProduct(product);
 
-        productMapper.update(request,product);
-        product.setCategory(category);
-        productRepository.save(product);
         request.setId(product.getId());
         return ResponseEntity.ok(request);
 
@@ -79,12 +103,24 @@ public class ProductController {
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
-        var product = productRepository.findById(id).orElse(null);
-        if(product==null) {
-            return ResponseEntity.notFound().build();
-        }
-
-        productRepository.delete(product);
+        productService.deleteProduct(id);
+        catalogCache.evictProduct(id);
+        cartService.removeProduct(id);
         return ResponseEntity.noContent().build();
     }
+
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<Void> handleProductNotFound() {
+        return ResponseEntity.notFound().build();
+    }
+
+    @ExceptionHandler(ProductInUseException.class)
+    public ResponseEntity<ErrorDto> handleProductInUse(Exception ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorDto(ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorDto> handleInvalidCursor(Exception ex) {
+        return ResponseEntity.badRequest().body(new ErrorDto(ex.getMessage()));
+    }
 }
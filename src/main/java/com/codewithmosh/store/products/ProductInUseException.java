@@ -0,0 +1,7 @@
+package com.codewithmosh.store.products;
+
+public class ProductInUseException extends RuntimeException {
+    public ProductInUseException() {
+        super("Product is part of existing orders and cannot be deleted.");
+    }
+}
@@ -1,16 +1,34 @@
 package com.codewithmosh.store.products;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
     @EntityGraph(attributePaths = "category")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "products-by-category")
+    })
     List<Product> findByCategoryId(Byte categoryId);
 
     @EntityGraph(attributePaths = "category")
     @Query("select p from Product p")
     List<Product> findAllWithCategory();
-}
\ No newline at end of file
+
+    //keyset page: seeks on the primary key instead of using an offset
+    @EntityGraph(attributePaths = "category")
+    @Query("select p from Product p where p.id > :afterId " +
+            "and (:categoryId is null or p.category.id = :categoryId) order by p.id")
+    List<Product> findPageAfter(
+            @Param("afterId") Long afterId,
+            @Param("categoryId") Byte categoryId,
+            Pageable pageable);
+}
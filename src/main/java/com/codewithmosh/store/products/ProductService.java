@@ -0,0 +1,51 @@
+package com.codewithmosh.store.products;
+
+import com.codewithmosh.store.carts.CartRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+//a product change and the running totals of the carts holding the product commit or roll back together
+@AllArgsConstructor
+@Service
+public class ProductService {
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final CartRepository cartRepository;
+
+    @Transactional
+    public Product updateProduct(Long id, ProductDto request, Category category) {
+        var product = productRepository.findById(id).orElseThrow(ProductNotFoundException::new);
+
+        var oldPrice = product.getPrice();
+        productMapper.update(request, product);
+        product.setCategory(category);
+        //the native totals query below must see the new price
+        productRepository.saveAndFlush(product);
+
+        //compareTo ignores the scale (10.0 vs 10.00), a missing price on either side is a change
+        if (Objects.compare(oldPrice, product.getPrice(), Comparator.nullsFirst(Comparator.naturalOrder())) != 0) {
+            cartRepository.refreshTotalsForProduct(id);
+        }
+        return product;
+    }
+
+    @Transactional
+    public void deleteProduct(Long id) {
+        var product = productRepository.findById(id).orElseThrow(ProductNotFoundException::new);
+
+        cartRepository.removeProductFromTotals(id);
+        productRepository.delete(product);
+        try {
+            //order_items keeps the product (no cascade), the cart totals above roll back with the delete
+            productRepository.flush();
+        } catch (DataIntegrityViolationException ex) {
+            throw new ProductInUseException();
+        }
+    }
+}
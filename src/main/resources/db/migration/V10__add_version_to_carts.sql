@@ -0,0 +1,2 @@
+alter table carts
+    add version bigint default 0 not null;
@@ -0,0 +1,13 @@
+alter table carts
+    add total_price decimal(10, 2) default 0 not null,
+    add item_count  int            default 0 not null;
+
+-- backfill the running totals of existing carts
+update carts c
+set c.total_price = (select coalesce(sum(p.price * i.quantity), 0)
+                     from cart_items i
+                              join products p on p.id = i.product_id
+                     where i.cart_id = c.id),
+    c.item_count  = (select coalesce(sum(i.quantity), 0)
+                     from cart_items i
+                     where i.cart_id = c.id);
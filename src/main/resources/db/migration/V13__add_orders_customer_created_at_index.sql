@@ -0,0 +1,3 @@
+-- serves the keyset pages of a customer's order history (newest first)
+create index orders_customer_created_at_index
+    on orders (customer_id, created_at, id);
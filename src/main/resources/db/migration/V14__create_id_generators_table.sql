@@ -0,0 +1,16 @@
+-- pooled id blocks for entities whose inserts are batched, next_val is the upper end of the next block
+create table id_generators
+(
+    name     varchar(64) not null
+        primary key,
+    next_val bigint      not null
+);
+
+-- start above the existing auto_increment ids (one full block of 50 past the current maximum)
+insert into id_generators (name, next_val)
+select 'orders', coalesce(max(id), 0) + 51
+from orders;
+
+insert into id_generators (name, next_val)
+select 'order_items', coalesce(max(id), 0) + 51
+from order_items;
@@ -0,0 +1,14 @@
+create table outbox_events
+(
+    id             bigint auto_increment
+        primary key,
+    aggregate_type varchar(50)                              not null,
+    aggregate_id   varchar(64)                              not null,
+    event_type     varchar(50)                              not null,
+    payload        json                                     not null,
+    created_at     datetime(3) default current_timestamp(3) not null,
+    published_at   datetime(3)                              null
+);
+
+create index outbox_events_published_at_index
+    on outbox_events (published_at, id);
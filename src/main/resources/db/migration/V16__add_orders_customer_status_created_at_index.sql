@@ -0,0 +1,3 @@
+-- serves order history pages filtered by status, orders_customer_created_at_index covers the unfiltered ones
+create index orders_customer_status_created_at_index
+    on orders (customer_id, status, created_at, id);
@@ -0,0 +1,3 @@
+-- a reservation whose request died is taken over once this passes, instead of blocking the key for the whole window
+alter table idempotency_keys
+    add reserved_until datetime null;
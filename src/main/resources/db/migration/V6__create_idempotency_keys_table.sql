@@ -0,0 +1,13 @@
+create table idempotency_keys
+(
+    id           char(64)                           not null
+        primary key,
+    status_code  int                                null,
+    content_type varchar(255)                       null,
+    body         longblob                           null,
+    created_at   datetime default current_timestamp not null,
+    expires_at   datetime                           not null
+);
+
+create index idempotency_keys_expires_at_index
+    on idempotency_keys (expires_at);
@@ -0,0 +1,12 @@
+create table webhook_events
+(
+    event_id     varchar(255)                             not null
+        primary key,
+    order_id     bigint                                   not null,
+    status       varchar(20)                              not null,
+    received_at  datetime(3) default current_timestamp(3) not null,
+    processed_at datetime(3)                              null
+);
+
+create index webhook_events_processed_at_index
+    on webhook_events (processed_at, received_at);
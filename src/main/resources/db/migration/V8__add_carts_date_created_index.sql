@@ -0,0 +1,2 @@
+create index carts_date_created_index
+    on carts (date_created);
@@ -0,0 +1,4 @@
+-- existing random ids stay valid, only new rows get time-ordered ids (the application generates UUIDv7,
+-- rows inserted outside of it get a swapped v1 id, which is time-ordered as well)
+alter table carts
+    alter column id set default (uuid_to_bin(uuid(), 1));
@@ -0,0 +1,54 @@
+package com.codewithmosh.store.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void startsFullAndRejectsOnceEmpty() {
+        var bucket = new TokenBucket(3, 0, now::get);
+
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isFalse();
+    }
+
+    @Test
+    void refillsOverTime() {
+        var bucket = new TokenBucket(1, 600, now::get); //one token every 100ms
+
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isFalse();
+
+        advance(99);
+        assertThat(bucket.tryConsume()).isFalse();
+
+        advance(1);
+        assertThat(bucket.tryConsume()).isTrue();
+    }
+
+    @Test
+    void neverHoldsMoreThanItsCapacity() {
+        var bucket = new TokenBucket(2, 600, now::get);
+        bucket.tryConsume();
+        bucket.tryConsume();
+
+        //enough time for three tokens, only two fit
+        advance(300);
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isTrue();
+        assertThat(bucket.tryConsume()).isFalse();
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,98 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//cart operations at 10/100/1000 lines, run main() from the test classpath (not part of mvn test)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int lines;
+
+    private Cart cart;
+    private Product last;
+    private Set<CartItem> loadedItems;
+    private List<CartItemOperation> everyLineOperations;
+    private int quantity;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart();
+        for (long id = 1; id <= lines; id++) {
+            last = Product.builder().id(id).name("Product " + id).price(BigDecimal.valueOf(id)).build();
+            cart.addItem(last);
+        }
+        loadedItems = new LinkedHashSet<>(cart.getItems());
+
+        everyLineOperations = new ArrayList<>();
+        for (long id = 1; id <= lines; id++) {
+            var operation = new CartItemOperation();
+            operation.setType(CartItemOperationType.SET);
+            operation.setProductId(id);
+            operation.setQuantity(2);
+            everyLineOperations.add(operation);
+        }
+    }
+
+    @Benchmark
+    public CartItem getItem() {
+        return cart.getItem(last.getId());
+    }
+
+    @Benchmark
+    public void setQuantity() {
+        quantity = quantity % Cart.MAX_QUANTITY + 1;
+        cart.setQuantity(last.getId(), quantity);
+    }
+
+    @Benchmark
+    public CartItem removeAndAddItem() {
+        cart.removeItem(last.getId());
+        return cart.addItem(last);
+    }
+
+    //a bulk edit touching every line, quadratic with a linear lookup
+    @Benchmark
+    public Cart setEveryLine() {
+        cart.setQuantities(cart.resolveQuantities(everyLineOperations), Map.of());
+        return cart;
+    }
+
+    //first lookup after Hibernate set the items, includes building the index
+    @Benchmark
+    public CartItem lookupAfterLoad() {
+        cart.setItems(loadedItems);
+        return cart.getItem(last.getId());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CartBenchmark.class.getSimpleName()).build()).run();
+    }
+}
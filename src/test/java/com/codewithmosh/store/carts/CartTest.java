@@ -0,0 +1,255 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartTest {
+
+    private final Product apple = product(1L, "1.50");
+    private final Product pear = product(2L, "2.00");
+    private final Product plum = product(3L, "0.25");
+
+    @Test
+    void addItemIncrementsAnExistingLine() {
+        var cart = new Cart();
+        cart.addItem(apple);
+        cart.addItem(apple);
+
+        assertThat(cart.getItems()).hasSize(1);
+        assertThat(cart.getItem(1L).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    void indexFollowsRemoveAndClear() {
+        var cart = new Cart();
+        cart.addItem(apple);
+        cart.addItem(pear);
+
+        cart.removeItem(1L);
+        assertThat(cart.getItem(1L)).isNull();
+        assertThat(cart.getItem(2L)).isNotNull();
+
+        cart.clear();
+        assertThat(cart.getItem(2L)).isNull();
+        assertThat(cart.isEmpty()).isTrue();
+
+        //the index is rebuilt after clear, a new line is found again
+        cart.addItem(pear);
+        assertThat(cart.getItem(2L).getQuantity()).isEqualTo(1);
+        assertThat(cart.getItems()).hasSize(1);
+    }
+
+    @Test
+    void indexIsRebuiltFromItemsSetLikeHibernateLoadsThem() {
+        var cart = new Cart();
+        cart.addItem(plum);
+
+        var items = new LinkedHashSet<CartItem>();
+        items.add(item(cart, apple, 3));
+        items.add(item(cart, pear, 1));
+        cart.setItems(items);
+
+        assertThat(cart.getItem(3L)).isNull();
+        assertThat(cart.getItem(1L).getQuantity()).isEqualTo(3);
+
+        //changes after the load keep the index in sync
+        cart.addItem(apple);
+        assertThat(cart.getItem(1L).getQuantity()).isEqualTo(4);
+        assertThat(cart.getItems()).hasSize(2);
+    }
+
+    @Test
+    void itemsKeepInsertionOrder() {
+        var cart = new Cart();
+        cart.addItem(pear);
+        cart.addItem(plum);
+        cart.addItem(apple);
+        cart.addItem(pear);
+
+        assertThat(cart.getItems()).extracting(item -> item.getProduct().getId()).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    void setQuantityOfAMissingProductFails() {
+        var cart = new Cart();
+
+        assertThatThrownBy(() -> cart.setQuantity(1L, 2)).isInstanceOf(ProductNotFoundException.class);
+    }
+
+    @Test
+    void operationsAreFoldedInOrderPerProduct() {
+        var cart = new Cart();
+        cart.addItem(apple, 2);
+
+        var quantities = cart.resolveQuantities(List.of(
+                operation(CartItemOperationType.INCREMENT, 1L, null),
+                operation(CartItemOperationType.SET, 2L, 5),
+                operation(CartItemOperationType.INCREMENT, 2L, 3),
+                operation(CartItemOperationType.REMOVE, 1L, null),
+                operation(CartItemOperationType.INCREMENT, 3L, 4),
+                operation(CartItemOperationType.REMOVE, 3L, null)));
+
+        assertThat(quantities).containsExactly(Map.entry(1L, 0), Map.entry(2L, 8), Map.entry(3L, 0));
+    }
+
+    @Test
+    void removeThenAddKeepsTheLine() {
+        var cart = new Cart();
+        cart.addItem(apple, 2);
+        var line = cart.getItem(1L);
+
+        var quantities = cart.resolveQuantities(List.of(
+                operation(CartItemOperationType.REMOVE, 1L, null),
+                operation(CartItemOperationType.INCREMENT, 1L, null)));
+        assertThat(quantities).containsExactly(Map.entry(1L, 1));
+        assertThat(cart.newProductIds(quantities)).isEmpty();
+
+        cart.setQuantities(quantities, Map.of());
+        assertThat(cart.getItem(1L)).isSameAs(line);
+        assertThat(line.getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    void incrementIsCappedAtTheMaximumQuantity() {
+        var cart = new Cart();
+        cart.addItem(apple, 999);
+
+        var quantities = cart.resolveQuantities(List.of(
+                operation(CartItemOperationType.INCREMENT, 1L, 5),
+                operation(CartItemOperationType.INCREMENT, 2L, 1000),
+                operation(CartItemOperationType.INCREMENT, 2L, 1000)));
+
+        assertThat(quantities).containsExactly(Map.entry(1L, Cart.MAX_QUANTITY), Map.entry(2L, Cart.MAX_QUANTITY));
+    }
+
+    @Test
+    void newProductIdsAreOnlyProductsThatEndUpInTheCart() {
+        var cart = new Cart();
+        cart.addItem(apple);
+
+        var quantities = cart.resolveQuantities(List.of(
+                operation(CartItemOperationType.SET, 1L, 3),
+                operation(CartItemOperationType.SET, 2L, 1),
+                operation(CartItemOperationType.INCREMENT, 3L, null),
+                operation(CartItemOperationType.REMOVE, 3L, null)));
+
+        assertThat(cart.newProductIds(quantities)).containsExactly(2L);
+    }
+
+    @Test
+    void totalsFollowEveryChange() {
+        var cart = new Cart();
+        cart.addItem(apple, 2);
+        cart.addItem(pear);
+        assertTotals(cart, "5.00", 3);
+
+        cart.setQuantity(2L, 4);
+        assertTotals(cart, "11.00", 6);
+
+        cart.removeItem(1L);
+        assertTotals(cart, "8.00", 4);
+
+        cart.setQuantities(Map.of(2L, 1, 3L, 4), Map.of(3L, plum));
+        assertTotals(cart, "3.00", 5);
+
+        cart.clear();
+        assertTotals(cart, "0", 0);
+    }
+
+    @Test
+    void totalsFollowAPriceChange() {
+        var cart = new Cart();
+        cart.addItem(apple, 2);
+        cart.addItem(pear);
+
+        cart.refreshProduct(product(1L, "1.00"));
+        assertTotals(cart, "4.00", 3);
+
+        //a product that is not in the cart changes nothing
+        cart.refreshProduct(product(3L, "9.00"));
+        assertTotals(cart, "4.00", 3);
+    }
+
+    @Test
+    void totalsMatchTheLinesAfterABatch() {
+        var cart = new Cart();
+        cart.addItem(apple, 3);
+        cart.addItem(plum, 2);
+
+        var quantities = cart.resolveQuantities(List.of(
+                operation(CartItemOperationType.REMOVE, 1L, null),
+                operation(CartItemOperationType.SET, 2L, 2),
+                operation(CartItemOperationType.INCREMENT, 3L, 6),
+                operation(CartItemOperationType.INCREMENT, 1L, 2)));
+        cart.setQuantities(quantities, Map.of(2L, pear));
+
+        var expectedTotal = cart.getItems().stream()
+                .map(CartItem::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        var expectedCount = cart.getItems().stream().mapToInt(CartItem::getQuantity).sum();
+        assertTotals(cart, expectedTotal.toPlainString(), expectedCount);
+        assertTotals(cart, "9.00", 12);
+    }
+
+    @Test
+    void removeQuantitiesKeepsWhatWasAddedAfterTheOrder() {
+        var cart = new Cart();
+        cart.addItem(apple, 2);
+        cart.addItem(pear);
+
+        //ordered 2 apples and 1 pear, then one more apple and a plum were added during the payment call
+        cart.addItem(apple);
+        cart.addItem(plum, 4);
+        cart.removeQuantities(Map.of(1L, 2, 2L, 1));
+
+        assertThat(cart.getItem(1L).getQuantity()).isEqualTo(1);
+        assertThat(cart.getItem(2L)).isNull();
+        assertThat(cart.getItem(3L).getQuantity()).isEqualTo(4);
+        assertTotals(cart, "2.50", 5);
+    }
+
+    @Test
+    void removeQuantitiesIgnoresLinesThatAreGone() {
+        var cart = new Cart();
+        cart.addItem(apple);
+
+        cart.removeQuantities(Map.of(1L, 3, 2L, 1));
+
+        assertThat(cart.isEmpty()).isTrue();
+        assertTotals(cart, "0", 0);
+    }
+
+    private static void assertTotals(Cart cart, String totalPrice, int itemCount) {
+        assertThat(cart.getTotalPrice()).isEqualByComparingTo(totalPrice);
+        assertThat(cart.getItemCount()).isEqualTo(itemCount);
+    }
+
+    private static Product product(Long id, String price) {
+        return Product.builder().id(id).name("Product " + id).price(new BigDecimal(price)).build();
+    }
+
+    private static CartItem item(Cart cart, Product product, int quantity) {
+        var item = new CartItem();
+        item.setCart(cart);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private static CartItemOperation operation(CartItemOperationType type, Long productId, Integer quantity) {
+        var operation = new CartItemOperation();
+        operation.setType(type);
+        operation.setProductId(productId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+}
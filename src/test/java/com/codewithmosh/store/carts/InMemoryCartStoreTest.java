@@ -0,0 +1,184 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.UuidBytes;
+import com.codewithmosh.store.products.CatalogCache;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class InMemoryCartStoreTest {
+
+    private final Product apple = Product.builder().id(1L).name("Apple").price(new BigDecimal("1.50")).build();
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final CatalogCache catalogCache = mock(CatalogCache.class);
+    private final CartMapper cartMapper = mock(CartMapper.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final CartStorageConfig cartStorageConfig = new CartStorageConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(catalogCache.findProduct(1L)).thenReturn(Optional.of(apple));
+        when(cartMapper.toDto(any(Cart.class))).thenAnswer(invocation -> {
+            var dto = new CartDto();
+            dto.setId(invocation.<Cart>getArgument(0).getId());
+            return dto;
+        });
+        //every cart row of an update batch still exists
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    var counts = new int[invocation.<Collection<?>>getArgument(1).size()];
+                    Arrays.fill(counts, 1);
+                    return new int[][]{counts};
+                });
+    }
+
+    @Test
+    void flushInsertsANewCartOnceAndUpdatesItAfterwards() {
+        var store = newStore();
+        var cartId = store.createCart().getId();
+        store.addToCart(cartId, 1L);
+
+        store.flush(cartId);
+        verify(jdbcTemplate).batchUpdate(startsWith("insert into carts"), hasSize(1), anyInt(), any());
+        assertThat(lastItemRows()).containsExactly(List.of(cartId, 1, 1L));
+
+        store.addToCart(cartId, 1L);
+        store.flush(cartId);
+        verify(jdbcTemplate).batchUpdate(startsWith("update carts"), hasSize(1), anyInt(), any());
+        assertThat(lastItemRows()).containsExactly(List.of(cartId, 2, 1L));
+
+        //nothing changed since, nothing is written
+        store.flush(cartId);
+        verify(jdbcTemplate).batchUpdate(startsWith("update carts"), hasSize(1), anyInt(), any());
+        verify(cartRepository, never()).getCartWithItems(any());
+    }
+
+    @Test
+    void concurrentChangesAreNotLostByFlushesInBetween() throws Exception {
+        var store = newStore();
+        var cartId = store.createCart().getId();
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        store.addToCart(cartId, 1L);
+                        if (i % 10 == 0) {
+                            store.flushDirty();
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        store.flushDirty();
+
+        assertThat(store.getVersion(cartId)).isEqualTo(800);
+        //the last write carries the final state
+        assertThat(lastItemRows()).containsExactly(List.of(cartId, 800, 1L));
+    }
+
+    @Test
+    void aDirtyCartEvictedFromTheCacheIsStillServedAndWritten() throws InterruptedException {
+        //every cart is evicted from the cache right away, only the dirty map keeps it
+        cartStorageConfig.setMaximumSize(0);
+        var store = newStore();
+        var cartId = store.createCart().getId();
+        store.addToCart(cartId, 1L);
+        store.addToCart(cartId, 1L);
+        awaitEviction();
+
+        assertThat(store.getVersion(cartId)).isEqualTo(2);
+        verifyNoInteractions(cartRepository);
+
+        store.flush(cartId);
+        verify(jdbcTemplate).batchUpdate(startsWith("insert into carts"), hasSize(1), anyInt(), any());
+        assertThat(lastItemRows()).containsExactly(List.of(cartId, 2, 1L));
+    }
+
+    @Test
+    void aMissReadsOnlyTheVersion() {
+        var store = newStore();
+        var cartId = UUID.randomUUID();
+        when(cartRepository.findVersion(cartId)).thenReturn(Optional.of(7L));
+
+        assertThat(store.getVersion(cartId)).isEqualTo(7);
+        verify(cartRepository, never()).getCartWithItems(any());
+    }
+
+    private InMemoryCartStore newStore() {
+        return new InMemoryCartStore(
+                cartRepository,
+                mock(ProductRepository.class),
+                catalogCache,
+                cartMapper,
+                jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                cartStorageConfig,
+                meterRegistry);
+    }
+
+    //cart_items rows of the most recent flush as (cart id, quantity, product id)
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> lastItemRows() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(startsWith("insert into cart_items"), rows.capture());
+        return rows.getValue().stream()
+                .map(row -> List.<Object>of(UuidBytes.fromBytes((byte[]) row[0]), row[1], row[2]))
+                .toList();
+    }
+
+    //Caffeine evicts on its maintenance thread
+    private void awaitEviction() throws InterruptedException {
+        var evictions = meterRegistry.get("cache.evictions").tag("cache", "carts").functionCounter();
+        for (int i = 0; i < 500 && evictions.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(evictions.count()).isPositive();
+    }
+
+    private static <T> Collection<T> hasSize(int size) {
+        return argThat(collection -> collection != null && collection.size() == size);
+    }
+}
@@ -0,0 +1,53 @@
+package com.codewithmosh.store.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//cost of a cart id, v7 against the random v4 ids it replaced; run main() from the test classpath (not part of mvn test).
+//the insert side (index page splits in MySQL) needs a database and is not measured here
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UuidV7Benchmark {
+
+    @Benchmark
+    public UUID v7() {
+        return UuidV7Generator.next();
+    }
+
+    @Benchmark
+    public UUID v4() {
+        return UUID.randomUUID();
+    }
+
+    //concurrent inserts, every thread goes through the same timestamp counter
+    @Benchmark
+    @Threads(4)
+    public UUID v7Contended() {
+        return UuidV7Generator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID v4Contended() {
+        return UUID.randomUUID();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UuidV7Benchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,44 @@
+package com.codewithmosh.store.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void setsVersionAndVariantBits() {
+        var id = UuidV7Generator.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void startsWithTheCurrentUnixMillis() {
+        var before = System.currentTimeMillis();
+        var id = UuidV7Generator.next();
+        var after = System.currentTimeMillis();
+
+        //a burst from another test may have run the counter ahead of the clock
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 100);
+    }
+
+    @Test
+    void idsIncreaseInByteOrderAndAreUnique() {
+        var seen = new HashSet<UUID>();
+        var previous = UuidV7Generator.next();
+        //more ids than the 12 bit counter holds in one millisecond
+        for (int i = 0; i < 100_000; i++) {
+            var id = UuidV7Generator.next();
+            //binary(16) compares byte by byte, i.e. the most significant bits unsigned
+            assertThat(Long.compareUnsigned(id.getMostSignificantBits(), previous.getMostSignificantBits()))
+                    .isPositive();
+            assertThat(seen.add(id)).isTrue();
+            previous = id;
+        }
+    }
+}
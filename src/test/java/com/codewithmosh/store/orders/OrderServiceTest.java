@@ -0,0 +1,80 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.auth.AuthService;
+import com.codewithmosh.store.common.InvalidCursorException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceTest {
+
+    private final AuthService authService = mock(AuthService.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderMapper orderMapper = mock(OrderMapper.class);
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        when(orderMapper.toDto(any())).thenReturn(new OrderDto());
+        orderService = new OrderService(
+                authService, orderRepository, orderMapper, new OrderHistoryConfig(), mock(OrderStatusBroadcaster.class));
+    }
+
+    @Test
+    void nextCursorContinuesAfterTheLastOrder() {
+        var newest = order(12L, LocalDateTime.of(2025, 3, 1, 10, 0, 0, 123_000_000));
+        //same timestamp, the id breaks the tie
+        var older = order(11L, LocalDateTime.of(2025, 3, 1, 10, 0, 0, 123_000_000));
+        when(orderRepository.findPageIds(eq(1L), any(), any(), any(), isNull(), isNull(), any()))
+                .thenReturn(List.of(12L, 11L, 7L));
+        when(orderRepository.getOrdersWithItems(List.of(12L, 11L))).thenReturn(List.of(newest, older));
+
+        var page = orderService.getOrderPage(null, 2, null, null, null);
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(page.getNext()).isNotNull();
+
+        orderService.getOrderPage(page.getNext(), 2, null, null, null);
+        verify(orderRepository).findPageIds(
+                eq(1L), isNull(), isNull(), isNull(), eq(older.getCreatedAt()), eq(11L), any());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        when(orderRepository.findPageIds(any(), any(), any(), any(), any(), any(), any())).thenReturn(List.of(5L));
+        when(orderRepository.getOrdersWithItems(List.of(5L)))
+                .thenReturn(List.of(order(5L, LocalDateTime.of(2025, 1, 1, 0, 0))));
+
+        assertThat(orderService.getOrderPage(null, 2, null, null, null).getNext()).isNull();
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThatThrownBy(() -> orderService.getOrderPage("not base64!", 2, null, null, null))
+                .isInstanceOf(InvalidCursorException.class);
+        //valid base64 of "abc", no separator
+        assertThatThrownBy(() -> orderService.getOrderPage("YWJj", 2, null, null, null))
+                .isInstanceOf(InvalidCursorException.class);
+        //valid base64 of "yesterday,12"
+        assertThatThrownBy(() -> orderService.getOrderPage("eWVzdGVyZGF5LDEy", 2, null, null, null))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static Order order(Long id, LocalDateTime createdAt) {
+        var order = new Order();
+        order.setId(id);
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+}
@@ -0,0 +1,68 @@
+package com.codewithmosh.store.products;
+
+import com.codewithmosh.store.common.InvalidCursorException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogServiceTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductMapper productMapper = mock(ProductMapper.class);
+    private ProductCatalogService productCatalogService;
+
+    @BeforeEach
+    void setUp() {
+        when(productMapper.toDto(any())).thenAnswer(invocation -> {
+            var dto = new ProductDto();
+            dto.setId(invocation.<Product>getArgument(0).getId());
+            return dto;
+        });
+        productCatalogService = new ProductCatalogService(
+                productRepository, productMapper, new CatalogConfig(), mock(JdbcTemplate.class), new ObjectMapper());
+    }
+
+    @Test
+    void nextCursorContinuesAfterTheLastItem() {
+        when(productRepository.findPageAfter(eq(0L), any(), any())).thenReturn(products(1L, 2L, 3L));
+        when(productRepository.findPageAfter(eq(2L), any(), any())).thenReturn(products(3L));
+
+        var first = productCatalogService.getPage(null, null, 2);
+        assertThat(first.getItems()).extracting(ProductDto::getId).containsExactly(1L, 2L);
+        assertThat(first.getNext()).isNotNull();
+        //one extra row tells whether there is a next page
+        verify(productRepository).findPageAfter(0L, null, PageRequest.of(0, 3));
+
+        var second = productCatalogService.getPage(null, first.getNext(), 2);
+        assertThat(second.getItems()).extracting(ProductDto::getId).containsExactly(3L);
+        assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        when(productRepository.findPageAfter(anyLong(), any(), any())).thenReturn(List.of());
+
+        assertThatThrownBy(() -> productCatalogService.getPage(null, "not base64!", 2))
+                .isInstanceOf(InvalidCursorException.class);
+        //valid base64 of "abc"
+        assertThatThrownBy(() -> productCatalogService.getPage(null, "YWJj", 2))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static List<Product> products(Long... ids) {
+        return List.of(ids).stream().map(id -> Product.builder().id(id).build()).toList();
+    }
+}